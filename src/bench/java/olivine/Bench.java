@@ -0,0 +1,32 @@
+package olivine;
+
+import java.io.IOException;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the benchmarks with the usual JMH command line, except that results are also written as
+// JSON unless some other result format or file is asked for
+public final class Bench {
+  private Bench() {}
+
+  public static void main(String[] args)
+      throws CommandLineOptionException, IOException, RunnerException {
+    var cmd = new CommandLineOptions(args);
+    if (cmd.shouldHelp()) {
+      cmd.showHelp();
+      return;
+    }
+    if (cmd.shouldList()) {
+      new Runner(cmd).list();
+      return;
+    }
+    var options = new OptionsBuilder().parent(cmd);
+    if (!cmd.getResultFormat().hasValue()) options.resultFormat(ResultFormatType.JSON);
+    if (!cmd.getResult().hasValue()) options.result("target/jmh-result.json");
+    new Runner(options.build()).run();
+  }
+}
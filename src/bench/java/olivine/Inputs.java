@@ -0,0 +1,141 @@
+package olivine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Benchmark inputs, generated from a fixed seed, so every run measures the same work without
+// needing any problem files
+final class Inputs {
+  private final Random random = new Random(0);
+  final GlobalVar[] constants = new GlobalVar[3];
+  final Func[] funcs = new Func[3];
+  final Func[] preds = new Func[2];
+  final Var[] vars = new Var[4];
+  final Var[] vars1 = new Var[4];
+
+  Inputs() {
+    for (var i = 0; i < constants.length; i++)
+      constants[i] = new GlobalVar("a" + i, Type.INDIVIDUAL);
+    funcs[0] = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    funcs[1] = new Func("g", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    funcs[2] = new Func("h", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    preds[0] = new Func("p", Type.BOOLEAN, Type.INDIVIDUAL);
+    preds[1] = new Func("q", Type.BOOLEAN, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    for (var i = 0; i < vars.length; i++) {
+      vars[i] = new Var(Type.INDIVIDUAL);
+      vars1[i] = new Var(Type.INDIVIDUAL);
+    }
+  }
+
+  private Term[] args(Func f, Var[] vars, int depth) {
+    var v = new Term[f.params.length];
+    for (var i = 0; i < v.length; i++) v[i] = term(vars, depth - 1);
+    return v;
+  }
+
+  // An individual term over the given variables
+  Term term(Var[] vars, int depth) {
+    if (depth == 0 || random.nextInt(100) < 30)
+      return random.nextInt(100) < 40
+          ? constants[random.nextInt(constants.length)]
+          : vars[random.nextInt(vars.length)];
+    var f = funcs[random.nextInt(funcs.length)];
+    return f.call(args(f, vars, depth));
+  }
+
+  Term atom(Var[] vars, int depth) {
+    if (random.nextInt(100) < 30)
+      return Term.of(Tag.EQUALS, term(vars, depth - 1), term(vars, depth - 1));
+    var p = preds[random.nextInt(preds.length)];
+    return p.call(args(p, vars, depth));
+  }
+
+  // A clause with fresh variables
+  Clause clause(int literals, int depth) {
+    var vars = new Var[3];
+    for (var i = 0; i < vars.length; i++) vars[i] = new Var(Type.INDIVIDUAL);
+    var negative = new ArrayList<Term>();
+    var positive = new ArrayList<Term>();
+    for (var i = 0; i < literals; i++)
+      (random.nextBoolean() ? negative : positive).add(atom(vars, depth));
+    return new Clause(negative, positive);
+  }
+
+  // A closed first-order formula
+  Term formula(int depth) {
+    var a = formula(vars, depth);
+    return a.quantify();
+  }
+
+  private Term formula(Var[] vars, int depth) {
+    if (depth == 0) return atom(vars, 2);
+    return switch (random.nextInt(6)) {
+      case 0 -> Term.of(Tag.NOT, formula(vars, depth - 1));
+      case 1 -> Term.of(Tag.OR, formula(vars, depth - 1), formula(vars, depth - 1));
+      case 2 -> Term.of(Tag.EQV, formula(vars, depth - 1), formula(vars, depth - 1));
+      case 3 -> formula(vars, depth - 1).implies(formula(vars, depth - 1));
+      case 4 -> Term.of(
+          random.nextBoolean() ? Tag.ALL : Tag.EXISTS,
+          formula(vars, depth - 1),
+          vars[random.nextInt(vars.length)]);
+      default -> Term.of(Tag.AND, formula(vars, depth - 1), formula(vars, depth - 1));
+    };
+  }
+
+  // The text of a TPTP problem with n formulas
+  String tptp(int n) {
+    var sb = new StringBuilder();
+    for (var i = 0; i < n; i++)
+      sb.append(String.format("fof(f%d, axiom, %s).\n", i, tptp(formula(3))));
+    return sb.toString();
+  }
+
+  private static String tptp(Term a) {
+    return switch (a.tag()) {
+      case NOT -> "~(" + tptp(a.get(0)) + ')';
+      case AND -> '(' + tptp(a.get(0)) + " & " + tptp(a.get(1)) + ')';
+      case OR -> '(' + tptp(a.get(0)) + " | " + tptp(a.get(1)) + ')';
+      case EQV -> '(' + tptp(a.get(0)) + " <=> " + tptp(a.get(1)) + ')';
+      case EQUALS -> '(' + tptp(a.get(0)) + " = " + tptp(a.get(1)) + ')';
+      case ALL, EXISTS -> {
+        var sb = new StringBuilder(a.tag() == Tag.ALL ? "![" : "?[");
+        for (var i = 1; i < a.size(); i++) {
+          if (i > 1) sb.append(',');
+          sb.append(tptp(a.get(i)));
+        }
+        yield sb + "]: " + tptp(a.get(0));
+      }
+      case CALL -> {
+        var sb = new StringBuilder(a.get(0).toString());
+        sb.append('(');
+        for (var i = 1; i < a.size(); i++) {
+          if (i > 1) sb.append(',');
+          sb.append(tptp(a.get(i)));
+        }
+        yield sb + ")";
+      }
+      case VAR -> "X" + ((Var) a).id;
+      default -> a.toString();
+    };
+  }
+
+  // Group theory, which superposition can run on for as long as it is allowed to
+  static List<Clause> group() {
+    var s =
+        """
+        cnf(associativity, axiom, mul(mul(X, Y), Z) = mul(X, mul(Y, Z))).
+        cnf(left_identity, axiom, mul(e, X) = X).
+        cnf(left_inverse, axiom, mul(inv(X), X) = e).
+        """;
+    var cnf = new CNF();
+    try {
+      TptpParser.parse(null, Etc.stringInputStream(s), cnf);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return cnf.clauses;
+  }
+}
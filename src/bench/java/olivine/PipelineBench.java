@@ -0,0 +1,66 @@
+package olivine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The stages a problem goes through, from text to clauses to proof search, each timed on its own
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBench {
+  private final List<Term> formulas = new ArrayList<>();
+  private String text;
+  private List<Clause> axioms;
+
+  // Number of given clauses the search is allowed
+  @Param("300")
+  public int steps;
+
+  @Setup
+  public void setup() {
+    var inputs = new Inputs();
+    for (var i = 0; i < 100; i++) formulas.add(inputs.formula(4));
+    text = inputs.tptp(100);
+    axioms = Inputs.group();
+  }
+
+  @Benchmark
+  public CNF cnf() {
+    var cnf = new CNF();
+    for (var a : formulas) cnf.add(a);
+    return cnf;
+  }
+
+  @Benchmark
+  public CNF parse() throws IOException {
+    var cnf = new CNF();
+    TptpParser.parse(null, Etc.stringInputStream(text), cnf);
+    return cnf;
+  }
+
+  // Group theory has no finite saturation, so the search runs until it is out of steps
+  @Benchmark
+  public boolean superposition() {
+    try {
+      return Superposition.sat(axioms, steps);
+    } catch (Fail e) {
+      return false;
+    }
+  }
+}
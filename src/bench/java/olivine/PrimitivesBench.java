@@ -0,0 +1,103 @@
+package olivine;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The operations the prover spends most of its time in, each run over a fixed batch of generated
+// inputs, so a score is the average cost of one operation on a typical mix of successes and
+// failures
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitivesBench {
+  private static final int N = 1000;
+
+  private final Term[] a = new Term[N];
+  private final Term[] b = new Term[N];
+
+  // Right-hand sides with variables disjoint from the left, for matching
+  private final Term[] b1 = new Term[N];
+
+  private final Clause[] c = new Clause[N];
+  private final Clause[] d = new Clause[N];
+
+  private final Substitution map = new Substitution();
+  private final Subsumption subsumption = new Subsumption();
+  private KnuthBendixOrder order;
+
+  @Setup
+  public void setup() {
+    var inputs = new Inputs();
+    for (var i = 0; i < N; i++) {
+      a[i] = inputs.term(inputs.vars, 4);
+      b[i] = inputs.term(inputs.vars, 4);
+      b1[i] = inputs.term(inputs.vars1, 4);
+    }
+
+    // Subsumption is tried between clauses of increasing length, like a forward check against
+    // shorter clauses
+    var clauses = new ArrayList<Clause>();
+    for (var i = 0; i < N; i++) {
+      c[i] = inputs.clause(1 + i % 3, 2);
+      d[i] = inputs.clause(2 + i % 4, 3);
+      clauses.add(c[i]);
+      clauses.add(d[i]);
+    }
+    order = new KnuthBendixOrder(clauses);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public void unify(Blackhole bh) {
+    for (var i = 0; i < N; i++) {
+      map.clear();
+      bh.consume(a[i].unify(map, b[i]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public void match(Blackhole bh) {
+    for (var i = 0; i < N; i++) {
+      map.clear();
+      bh.consume(a[i].match(map, b1[i]));
+    }
+  }
+
+  // Unify, then apply the unifier, as when a resolvent is built
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public void replace(Blackhole bh) {
+    for (var i = 0; i < N; i++) {
+      map.clear();
+      if (a[i].unify(map, b[i])) bh.consume(a[i].replace(map));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public void compare(Blackhole bh) {
+    for (var i = 0; i < N; i++) bh.consume(order.compare(a[i], b[i]));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public void subsumes(Blackhole bh) {
+    for (var i = 0; i < N; i++) bh.consume(subsumption.subsumes(c[i], d[i]));
+  }
+}
@@ -0,0 +1,101 @@
+package olivine;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+// Priority queue for small non-negative integer keys, such as clause weights. Each key has its own
+// FIFO bucket, so elements with equal keys come out in the order they went in, and a cursor tracks
+// the lowest bucket that might be nonempty. The cursor only moves back when an element is added
+// below it, so insert and poll take constant amortized time instead of the logarithmic time (and
+// many more key comparisons) of a binary heap
+public final class BucketQueue<T> extends AbstractQueue<T> {
+  private final ToIntFunction<T> key;
+  private final ArrayList<ArrayDeque<T>> buckets = new ArrayList<>();
+  private int min;
+  private int size;
+
+  public BucketQueue(ToIntFunction<T> key) {
+    this.key = key;
+  }
+
+  @Override
+  public boolean offer(T x) {
+    var k = key.applyAsInt(x);
+    if (k < 0) throw new IllegalArgumentException(x + ": negative key " + k);
+    while (buckets.size() <= k) buckets.add(null);
+    var bucket = buckets.get(k);
+    if (bucket == null) {
+      bucket = new ArrayDeque<>();
+      buckets.set(k, bucket);
+    }
+    bucket.add(x);
+    if (k < min) min = k;
+    size++;
+    return true;
+  }
+
+  private ArrayDeque<T> first() {
+    if (size == 0) return null;
+    for (; ; min++) {
+      var bucket = buckets.get(min);
+      if (bucket != null && !bucket.isEmpty()) return bucket;
+    }
+  }
+
+  @Override
+  public T poll() {
+    var bucket = first();
+    if (bucket == null) return null;
+    size--;
+    return bucket.poll();
+  }
+
+  @Override
+  public T peek() {
+    var bucket = first();
+    if (bucket == null) return null;
+    return bucket.peek();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    buckets.clear();
+    min = 0;
+    size = 0;
+  }
+
+  // In priority order
+  @Override
+  public Iterator<T> iterator() {
+    return new Iterator<>() {
+      private int i = min;
+      private Iterator<T> bucket;
+      private int remaining = size;
+
+      @Override
+      public boolean hasNext() {
+        return remaining > 0;
+      }
+
+      @Override
+      public T next() {
+        if (remaining == 0) throw new NoSuchElementException();
+        while (bucket == null || !bucket.hasNext()) {
+          var b = buckets.get(i++);
+          if (b != null) bucket = b.iterator();
+        }
+        remaining--;
+        return bucket.next();
+      }
+    };
+  }
+}
@@ -8,6 +8,7 @@ public final class CNF {
   private final List<Term> negative = new ArrayList<>();
   private final List<Term> positive = new ArrayList<>();
   public final List<Clause> clauses = new ArrayList<>();
+  private boolean goal;
 
   // How many clauses a term will expand into, for the purpose of deciding when subformulas need to
   // be renamed. The answer could
@@ -356,10 +357,17 @@ public final class CNF {
     // TODO: eliminate duplicate literals here?
     var c = new Clause(negative, positive);
     if (c.isTrue()) return;
+    c.goal = goal;
     clauses.add(c);
   }
 
   public void add(Term a) {
+    add(a, false);
+  }
+
+  // A goal is the negated conjecture, and the clauses from it are marked as such
+  public void add(Term a, boolean goal) {
+    this.goal = goal;
     // First run the input formula through the full process: Rename subformulas where necessary to
     // avoid exponential expansion,
     // then convert to negation normal form, distribute OR into AND, and convert to clauses.
@@ -1,85 +1,684 @@
 package olivine;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+// Conflict-driven clause learning SAT solver. Clauses are given as in DIMACS: variables are
+// numbered from 1, and a literal is a variable number, negated for a negative literal. Internally,
+// literal 2v is variable v and 2v+1 its negation, so the complement of literal l is l ^ 1.
+//
+// Unit propagation watches two literals of each clause, kept as its first two. Each conflict is
+// analyzed back to its first unique implication point, and the clause learned from it is
+// minimized, then added. Decisions take the unassigned variable with the highest activity, which
+// is bumped for the variables in each conflict and decays exponentially (EVSIDS), and give it the
+// value it last had. The search restarts after numbers of conflicts following the Luby sequence,
+// and when there are too many learned clauses, deletes the half that look least useful, judged by
+// the number of decision levels among their literals (LBD), then by activity
 public final class Cdcl {
-  private static final class Assignment {
-    final Term atom;
-    final boolean value;
-    final Clause reason;
+  private static final byte TRUE = 1;
+  private static final byte FALSE = -1;
 
-    Assignment(Term atom, boolean value, Clause reason) {
-      this.atom = atom;
-      this.value = value;
-      this.reason = reason;
+  private static final int RESTART_UNIT = 100;
+  private static final double VAR_DECAY = 0.95;
+  private static final double CLAUSE_DECAY = 0.999;
+
+  // Clauses are kept one after another in an arena of ints, and referred to by offset, so
+  // propagation reads them without following a pointer to each. A clause is a header, then its
+  // literals. The header gives the number of literals; flags, with the LBD of a learned clause
+  // above them; and the activity of a learned clause, as the bits of a float
+  private static final int SIZE = 0;
+  private static final int FLAGS = 1;
+  private static final int ACTIVITY = 2;
+  private static final int HEADER = 3;
+
+  private static final int LEARNED = 1;
+  private static final int DELETED = 2;
+  private static final int LBD_SHIFT = 2;
+
+  private static final int NONE = -1;
+
+  private static final class IntList {
+    int[] v = new int[16];
+    int size;
+
+    void add(int x) {
+      if (size == v.length) v = Arrays.copyOf(v, size * 2);
+      v[size++] = x;
     }
   }
 
-  private final List<Clause> clauses;
-  private final List<Assignment> trail = new ArrayList<>();
-  private final boolean result;
+  private int vars;
+  private boolean inconsistent;
+  private int[] failed = new int[0];
+  private int[] arena = new int[1024];
+  private int arenaSize;
+  private int clauses;
+  private final IntList learned = new IntList();
+  private long maxLearned;
+
+  // The clause being added, and which of its literals have been seen, marked by a number for each
+  private int[] buf = new int[16];
+  private int[] added = new int[2];
+  private int addStamp;
+
+  // Indexed by literal. Each clause watching a literal has a blocker, another of its literals; if
+  // that is true, the clause is satisfied and need not be looked at
+  private byte[] values = new byte[2];
+  private int[][] watches = new int[2][];
+  private int[][] blockers = new int[2][];
+  private int[] watchSizes = new int[2];
+
+  // Indexed by variable
+  private int[] levels = new int[1];
+  private int[] reasons = new int[1];
+  private double[] activity = new double[1];
+  private boolean[] phases = new boolean[1];
+  private boolean[] seen = new boolean[1];
+  private boolean[] model = new boolean[1];
 
-  private Assignment assignment(Term a) {
-    for (var assignment : trail) if (assignment.atom == a) return assignment;
-    throw new IllegalStateException(a.toString());
+  // Assigned literals in order, and where each decision level starts
+  private int[] trail = new int[1];
+  private int trailSize;
+  private int[] trailStarts = new int[1];
+  private int level;
+  private int propagated;
+
+  // Unassigned variables, and maybe some assigned ones, in a binary heap ordered by activity
+  private int[] heap = new int[1];
+  private int heapSize;
+  private int[] heapIndex = new int[1];
+
+  private double varInc = 1;
+  private double clauseInc = 1;
+
+  // Statistics for the current search
+  private long conflicts;
+  private long decisions;
+  private long restarts;
+  private long deleted;
+
+  public Cdcl() {}
+
+  private static int lit(int x) {
+    return x > 0 ? x << 1 : -x << 1 | 1;
   }
 
-  private Graph<Assignment> implicationGraph() {
-    var graph = new Graph<Assignment>();
-    for (var assignment : trail) {
-      var c = assignment.reason;
-      if (c != null)
-        for (var a : c.literals) if (a != assignment.atom) graph.add(assignment(a), assignment);
+  // Makes room for variables up to n, with capacity to spare so variables numbered in increasing
+  // order do not copy the arrays each time
+  private void grow(int n) {
+    if (n >= levels.length) {
+      var size = Math.max(n + 1, levels.length * 2);
+      values = Arrays.copyOf(values, size * 2);
+      watches = Arrays.copyOf(watches, size * 2);
+      blockers = Arrays.copyOf(blockers, size * 2);
+      watchSizes = Arrays.copyOf(watchSizes, size * 2);
+      added = Arrays.copyOf(added, size * 2);
+      levels = Arrays.copyOf(levels, size);
+      reasons = Arrays.copyOf(reasons, size);
+      activity = Arrays.copyOf(activity, size);
+      phases = Arrays.copyOf(phases, size);
+      seen = Arrays.copyOf(seen, size);
+      model = Arrays.copyOf(model, size);
+      trail = Arrays.copyOf(trail, size);
+      trailStarts = Arrays.copyOf(trailStarts, size);
+      heap = Arrays.copyOf(heap, size);
+      heapIndex = Arrays.copyOf(heapIndex, size);
+    }
+    for (var v = vars + 1; v <= n; v++) {
+      reasons[v] = NONE;
+      heapIndex[v] = -1;
+      heapInsert(v);
     }
-    return graph;
+    vars = n;
+  }
+
+  public int vars() {
+    return vars;
   }
 
-  private Cdcl(List<Clause> clauses, long steps) {
-    this.clauses = clauses;
-    loop:
-    while (steps-- > 0) {
-      var map = FMap.EMPTY;
-      for (var assignment : trail) map = map.add(assignment.atom, Term.of(assignment.value));
+  // Adds a clause, which may mention new variables. Clauses can only be added between searches
+  public void add(int... clause) {
+    add(clause, 0, clause.length);
+  }
+
+  // Adds the clause of the literals v[i], ..., v[j - 1]
+  public void add(int[] v, int i, int j) {
+    if (inconsistent) return;
+    if (buf.length < j - i) buf = new int[j - i];
+    var n = 0;
+    var stamp = ++addStamp;
+    for (var k = i; k < j; k++) {
+      var x = v[k];
+      if (x == 0) throw new IllegalArgumentException("0: not a literal");
+      if (Math.abs(x) > vars) grow(Math.abs(x));
+      var l = lit(x);
+
+      // True literals make the clause redundant, and false ones can be left out, as are values
+      // assigned before any decision
+      if (values[l] == TRUE || added[l ^ 1] == stamp) return;
+      if (values[l] == FALSE || added[l] == stamp) continue;
+      added[l] = stamp;
+      buf[n++] = l;
+    }
+    switch (n) {
+      case 0 -> inconsistent = true;
+      case 1 -> {
+        assign(buf[0], NONE);
+        if (propagate() != NONE) inconsistent = true;
+      }
+      default -> {
+        watch(clause(buf, n, 0));
+        clauses++;
+      }
+    }
+  }
+
+  // Returns the offset of a new clause with the first n of the literals
+  private int clause(int[] v, int n, int flags) {
+    var c = arenaSize;
+    if (c + HEADER + n > arena.length)
+      arena = Arrays.copyOf(arena, Math.max(arena.length * 2, c + HEADER + n));
+    arena[c + SIZE] = n;
+    arena[c + FLAGS] = flags;
+    arena[c + ACTIVITY] = 0;
+    System.arraycopy(v, 0, arena, c + HEADER, n);
+    arenaSize = c + HEADER + n;
+    return c;
+  }
+
+  private void watch(int l, int c, int blocker) {
+    var ws = watches[l];
+    if (ws == null) {
+      ws = watches[l] = new int[4];
+      blockers[l] = new int[4];
+    } else if (watchSizes[l] == ws.length) {
+      ws = watches[l] = Arrays.copyOf(ws, ws.length * 2);
+      blockers[l] = Arrays.copyOf(blockers[l], ws.length);
+    }
+    ws[watchSizes[l]] = c;
+    blockers[l][watchSizes[l]++] = blocker;
+  }
+
+  private void watch(int c) {
+    var a = arena[c + HEADER];
+    var b = arena[c + HEADER + 1];
+    watch(a, c, b);
+    watch(b, c, a);
+  }
 
-      // contradiction?
-      for (var c : clauses) {
-        var c1 = c.replace(map);
-        if (c1.isFalse()) {
-          //  backtrack
-          trail.add(new Assignment(null, false, c));
-          var graph = implicationGraph();
-          continue loop;
+  private void assign(int l, int reason) {
+    values[l] = TRUE;
+    values[l ^ 1] = FALSE;
+    var v = l >> 1;
+    levels[v] = level;
+    reasons[v] = reason;
+    trail[trailSize++] = l;
+  }
+
+  // Returns a clause whose literals are all false, or NONE if there is none
+  private int propagate() {
+    var arena = this.arena;
+    while (propagated < trailSize) {
+      // This literal has just become false, so the clauses watching it need another literal
+      var p = trail[propagated++] ^ 1;
+      var ws = watches[p];
+      var bs = blockers[p];
+      var n = watchSizes[p];
+      var i = 0;
+      var j = 0;
+      next:
+      while (i < n) {
+        var c = ws[i];
+        var blocker = bs[i++];
+        if (values[blocker] == TRUE) {
+          ws[j] = c;
+          bs[j++] = blocker;
+          continue;
+        }
+        var lits = c + HEADER;
+        if (arena[lits] == p) {
+          arena[lits] = arena[lits + 1];
+          arena[lits + 1] = p;
+        }
+        var first = arena[lits];
+        if (first != blocker && values[first] == TRUE) {
+          ws[j] = c;
+          bs[j++] = first;
+          continue;
         }
+        var end = lits + arena[c + SIZE];
+        for (var k = lits + 2; k < end; k++)
+          if (values[arena[k]] != FALSE) {
+            arena[lits + 1] = arena[k];
+            arena[k] = p;
+            watch(arena[lits + 1], c, first);
+            continue next;
+          }
+
+        // No other literal can be watched, so the clause is unit or false
+        ws[j] = c;
+        bs[j++] = first;
+        if (values[first] == FALSE) {
+          while (i < n) {
+            ws[j] = ws[i];
+            bs[j++] = bs[i++];
+          }
+          watchSizes[p] = j;
+          propagated = trailSize;
+          return c;
+        }
+        assign(first, c);
+      }
+      watchSizes[p] = j;
+    }
+    return NONE;
+  }
+
+  private void backtrack(int level) {
+    if (this.level <= level) return;
+    for (var i = trailSize - 1; i >= trailStarts[level]; i--) {
+      var l = trail[i];
+      var v = l >> 1;
+      values[l] = 0;
+      values[l ^ 1] = 0;
+      reasons[v] = NONE;
+      phases[v] = (l & 1) == 0;
+      if (heapIndex[v] < 0) heapInsert(v);
+    }
+    trailSize = propagated = trailStarts[level];
+    this.level = level;
+  }
+
+  // Activity
+  private void bumpVar(int v) {
+    if ((activity[v] += varInc) > 1e100) {
+      for (var i = 1; i <= vars; i++) activity[i] *= 1e-100;
+      varInc *= 1e-100;
+    }
+    if (heapIndex[v] >= 0) heapUp(heapIndex[v]);
+  }
+
+  private float clauseActivity(int c) {
+    return Float.intBitsToFloat(arena[c + ACTIVITY]);
+  }
+
+  private void bumpClause(int c) {
+    var a = (float) (clauseActivity(c) + clauseInc);
+    arena[c + ACTIVITY] = Float.floatToRawIntBits(a);
+    if (a > 1e20f) {
+      for (var i = 0; i < learned.size; i++) {
+        var d = learned.v[i];
+        arena[d + ACTIVITY] = Float.floatToRawIntBits(clauseActivity(d) * 1e-20f);
+      }
+      clauseInc *= 1e-20;
+    }
+  }
+
+  // Heap of variables by activity
+  private void heapInsert(int v) {
+    heap[heapSize] = v;
+    heapIndex[v] = heapSize;
+    heapUp(heapSize++);
+  }
+
+  private void heapUp(int i) {
+    var v = heap[i];
+    while (i > 0) {
+      var parent = (i - 1) >> 1;
+      var u = heap[parent];
+      if (activity[u] >= activity[v]) break;
+      heap[i] = u;
+      heapIndex[u] = i;
+      i = parent;
+    }
+    heap[i] = v;
+    heapIndex[v] = i;
+  }
+
+  private void heapDown(int i) {
+    var v = heap[i];
+    for (; ; ) {
+      var child = 2 * i + 1;
+      if (child >= heapSize) break;
+      if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) child++;
+      var u = heap[child];
+      if (activity[u] <= activity[v]) break;
+      heap[i] = u;
+      heapIndex[u] = i;
+      i = child;
+    }
+    heap[i] = v;
+    heapIndex[v] = i;
+  }
+
+  private int heapPop() {
+    var v = heap[0];
+    heapIndex[v] = -1;
+    if (--heapSize > 0) {
+      heap[0] = heap[heapSize];
+      heapDown(0);
+    }
+    return v;
+  }
+
+  // The literal to decide next, or -1 if every variable is assigned
+  private int decide() {
+    while (heapSize > 0) {
+      var v = heapPop();
+      if (values[v << 1] == 0) return phases[v] ? v << 1 : v << 1 | 1;
+    }
+    return -1;
+  }
+
+  // Conflict analysis
+  private final IntList learnt = new IntList();
+  private final IntList toClear = new IntList();
+  private int[] levelStamps = new int[1];
+  private int stamp;
+
+  // Whether the literal is implied by others in the learned clause, so can be left out
+  private boolean redundant(int l) {
+    var c = reasons[l >> 1];
+    if (c == NONE) return false;
+    var end = c + HEADER + arena[c + SIZE];
+    for (var k = c + HEADER + 1; k < end; k++) {
+      var v = arena[k] >> 1;
+      if (!seen[v] && levels[v] > 0) return false;
+    }
+    return true;
+  }
+
+  // Returns the clause learned from the conflict, its first literal the one that will be implied
+  // after backtracking, and its second, if any, one of the highest level among the rest
+  private int[] analyze(int c) {
+    learnt.size = 0;
+    learnt.add(-1);
+    var paths = 0;
+    var p = -1;
+    var i = trailSize;
+    do {
+      if ((arena[c + FLAGS] & LEARNED) != 0) bumpClause(c);
+      var end = c + HEADER + arena[c + SIZE];
+      for (var k = c + HEADER + (p < 0 ? 0 : 1); k < end; k++) {
+        var q = arena[k];
+        var v = q >> 1;
+        if (seen[v] || levels[v] == 0) continue;
+        bumpVar(v);
+        seen[v] = true;
+        if (levels[v] == level) paths++;
+        else learnt.add(q);
       }
 
-      // unit propagation
-      Clause c2 = null;
-      for (var c : clauses) {
-        var c1 = c.replace(map);
-        if (c1.isTrue()) continue;
-        if (c1.literals.length == 1) {
-          trail.add(new Assignment(c1.literals[0], c1.negativeSize == 0, c));
-          continue loop;
+      // The most recently assigned literal in the conflict
+      while (!seen[trail[--i] >> 1])
+        ;
+      p = trail[i];
+      c = reasons[p >> 1];
+      seen[p >> 1] = false;
+    } while (--paths > 0);
+    learnt.v[0] = p ^ 1;
+
+    // Minimize
+    toClear.size = 0;
+    for (var j = 1; j < learnt.size; j++) toClear.add(learnt.v[j]);
+    var n = 1;
+    for (var j = 1; j < learnt.size; j++) {
+      var q = learnt.v[j];
+      if (!redundant(q)) learnt.v[n++] = q;
+    }
+    for (var j = 0; j < toClear.size; j++) seen[toClear.v[j] >> 1] = false;
+
+    var v = Arrays.copyOf(learnt.v, n);
+    if (n > 1) {
+      var max = 1;
+      for (var j = 2; j < n; j++) if (levels[v[j] >> 1] > levels[v[max] >> 1]) max = j;
+      var l = v[1];
+      v[1] = v[max];
+      v[max] = l;
+    }
+    return v;
+  }
+
+  // Number of decision levels among the literals
+  private int lbd(int[] v) {
+    if (levelStamps.length <= level) levelStamps = Arrays.copyOf(levelStamps, level + 1);
+    stamp++;
+    var n = 0;
+    for (var l : v) {
+      var k = levels[l >> 1];
+      if (levelStamps[k] != stamp) {
+        levelStamps[k] = stamp;
+        n++;
+      }
+    }
+    return n;
+  }
+
+  private int lbdOf(int c) {
+    return arena[c + FLAGS] >>> LBD_SHIFT;
+  }
+
+  private boolean locked(int c) {
+    var l = arena[c + HEADER];
+    return values[l] == TRUE && reasons[l >> 1] == c;
+  }
+
+  // Keeps the better half of the learned clauses, and those that are reasons for the current
+  // assignment or link only two decision levels
+  private void reduce() {
+    var v = new Integer[learned.size];
+    for (var i = 0; i < v.length; i++) v[i] = learned.v[i];
+    Arrays.sort(
+        v,
+        (a, b) ->
+            lbdOf(a) != lbdOf(b)
+                ? Integer.compare(lbdOf(a), lbdOf(b))
+                : Float.compare(clauseActivity(b), clauseActivity(a)));
+    for (var i = v.length / 2; i < v.length; i++) {
+      int c = v[i];
+      if (lbdOf(c) <= 2 || locked(c)) continue;
+      arena[c + FLAGS] |= DELETED;
+      deleted++;
+    }
+    compact();
+    maxLearned += maxLearned / 10;
+  }
+
+  // Moves the clauses that are left into a new arena. The watched literals of each clause stay the
+  // same, so the lists can just be made again
+  private void compact() {
+    var old = arena;
+    arena = new int[Math.max(arenaSize, 1024)];
+    var n = 0;
+    learned.size = 0;
+    for (var c = 0; c < arenaSize; ) {
+      var size = HEADER + old[c + SIZE];
+      var flags = old[c + FLAGS];
+      if ((flags & DELETED) == 0) {
+        System.arraycopy(old, c, arena, n, size);
+        if ((flags & LEARNED) != 0) learned.add(n);
+
+        // Where the clause has gone, for the reasons that refer to it
+        old[c + FLAGS] = n;
+        n += size;
+      }
+      c += size;
+    }
+    arenaSize = n;
+    for (var i = 0; i < trailSize; i++) {
+      var v = trail[i] >> 1;
+      if (reasons[v] != NONE) reasons[v] = old[reasons[v] + FLAGS];
+    }
+    Arrays.fill(watchSizes, 0);
+    for (var c = 0; c < arenaSize; c += HEADER + arena[c + SIZE]) watch(c);
+  }
+
+  // The Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+  static long luby(long i) {
+    long size = 1;
+    var k = 0;
+    while (size < i + 1) {
+      k++;
+      size = 2 * size + 1;
+    }
+    while (size - 1 != i) {
+      size = (size - 1) >> 1;
+      k--;
+      i %= size;
+    }
+    return 1L << k;
+  }
+
+  // The assumptions that the last unsatisfiable search found could not all be true
+  private void analyzeFinal(int p) {
+    var core = new IntList();
+    core.add(p);
+    seen[p >> 1] = true;
+    var start = level > 0 ? trailStarts[0] : trailSize;
+    for (var i = trailSize - 1; i >= start; i--) {
+      var l = trail[i];
+      var v = l >> 1;
+      if (!seen[v]) continue;
+      seen[v] = false;
+      var c = reasons[v];
+
+      // Before the first decision that is not an assumption, every decision is one
+      if (c == NONE) {
+        core.add(l);
+        continue;
+      }
+      var end = c + HEADER + arena[c + SIZE];
+      for (var k = c + HEADER + 1; k < end; k++) {
+        var u = arena[k] >> 1;
+        if (levels[u] > 0) seen[u] = true;
+      }
+    }
+    seen[p >> 1] = false;
+    failed = new int[core.size];
+    for (var i = 0; i < core.size; i++) {
+      var l = core.v[i];
+      failed[i] = (l & 1) == 0 ? l >> 1 : -(l >> 1);
+    }
+  }
+
+  // Runs until the next restart, returning null if the search should restart. The assumptions are
+  // decided first, each at a level of its own
+  private Boolean search(long limit, long steps, int[] assumptions) {
+    for (long n = 0; ; ) {
+      var conflict = propagate();
+      if (conflict != NONE) {
+        if (level == 0) {
+          inconsistent = true;
+          return false;
+        }
+        if (++conflicts > steps) throw new Fail();
+        if (Thread.currentThread().isInterrupted()) throw new Fail();
+        n++;
+        var v = analyze(conflict);
+        var lbd = lbd(v);
+        backtrack(v.length == 1 ? 0 : levels[v[1] >> 1]);
+        if (v.length == 1) assign(v[0], NONE);
+        else {
+          var c = clause(v, v.length, lbd << LBD_SHIFT | LEARNED);
+          learned.add(c);
+          watch(c);
+          bumpClause(c);
+          assign(v[0], c);
         }
-        if (c2 == null) c2 = c1;
+        varInc /= VAR_DECAY;
+        clauseInc /= CLAUSE_DECAY;
+        continue;
       }
+      if (n >= limit) return null;
+      if (learned.size - trailSize >= maxLearned) reduce();
+      int l;
+      if (level < assumptions.length) {
+        l = assumptions[level];
 
-      // no clause remains unsatisfied
-      if (c2 == null) {
-        result = true;
-        return;
+        // An assumption already true still gets its level, so the levels and assumptions stay in
+        // step
+        if (values[l] == TRUE) {
+          trailStarts[level++] = trailSize;
+          continue;
+        }
+        if (values[l] == FALSE) {
+          analyzeFinal(l);
+          return false;
+        }
+      } else {
+        l = decide();
+        if (l < 0) return true;
+        decisions++;
       }
+      trailStarts[level++] = trailSize;
+      assign(l, NONE);
+    }
+  }
+
+  // Throws Fail if there are more conflicts than the given number of steps
+  public boolean solve(long steps) {
+    return solve(steps, new int[0]);
+  }
 
-      // choice
-      trail.add(new Assignment(c2.literals[0], false, null));
+  // Searches for a model in which the assumptions are true. Learned clauses follow from the clauses
+  // alone, so they are kept for later searches, which can add clauses and take other assumptions
+  public boolean solve(long steps, int... assumptions) {
+    failed = new int[0];
+    if (inconsistent) return false;
+    var v = new int[assumptions.length];
+    for (var i = 0; i < v.length; i++) {
+      var x = assumptions[i];
+      if (x == 0) throw new IllegalArgumentException("0: not a literal");
+      if (Math.abs(x) > vars) grow(Math.abs(x));
+      v[i] = lit(x);
+    }
+    if (trailStarts.length <= vars + v.length)
+      trailStarts = Arrays.copyOf(trailStarts, vars + v.length + 1);
+    conflicts = decisions = restarts = deleted = 0;
+    maxLearned = Math.max(clauses / 3, 1000);
+    try {
+      for (; ; restarts++) {
+        var result = search(luby(restarts) * RESTART_UNIT, steps, v);
+        if (result == null) {
+          backtrack(0);
+          continue;
+        }
+        if (result) for (var i = 1; i <= vars; i++) model[i] = values[i << 1] == TRUE;
+        return result;
+      }
+    } finally {
+      backtrack(0);
+      Stats.inc("sat conflicts", conflicts);
+      Stats.inc("sat decisions", decisions);
+      Stats.inc("sat restarts", restarts);
+      Stats.inc("learned clauses deleted", deleted);
     }
-    throw new Fail();
+  }
+
+  // The value of a variable in the assignment found by the last search that was satisfiable
+  public boolean value(int v) {
+    return model[v];
+  }
+
+  // After a search that was unsatisfiable, assumptions, as given, that cannot all be true. Empty if
+  // the clauses are unsatisfiable without any
+  public int[] failed() {
+    return failed;
   }
 
   public static boolean sat(List<Clause> clauses, long steps) {
-    assert Clause.propositional(clauses);
-    // TODO: make sure no duplicate literals
-    return new Cdcl(clauses, steps).result;
+    return sat(DimacsParser.Problem.of(clauses), steps);
+  }
+
+  public static boolean sat(DimacsParser.Problem problem, long steps) {
+    var solver = new Cdcl();
+    solver.grow(problem.vars);
+    var v = problem.literals;
+    for (int i = 0, j = 0; j < problem.size; j++)
+      if (v[j] == 0) {
+        solver.add(v, i, j);
+        i = j + 1;
+      }
+    return solver.solve(steps);
   }
 }
@@ -6,9 +6,42 @@ public final class Clause {
   final Term[] literals;
   final int negativeSize;
 
-  private Clause(Term[] literals, int negativeSize) {
+  // Symbols plus two per literal, computed once because clause selection compares it so often
+  final int weight;
+
+  // Derived from the negated conjecture
+  boolean goal;
+
+  // Number of the iteration of the given clause loop when the clause was generated
+  long birth;
+
+  // Index of the literal chosen by literal selection, if any, when the clause became active
+  int selected = -1;
+
+  // Components named by AVATAR splitting that the clause was derived from, as SAT variables in
+  // increasing order. The clause follows from the problem only where all of them hold
+  static final int[] NO_SPLITS = new int[0];
+  int[] splits = NO_SPLITS;
+
+  Clause(Term[] literals, int negativeSize) {
     this.literals = literals;
     this.negativeSize = negativeSize;
+    weight = weight(literals);
+  }
+
+  private static int weight(Term[] literals) {
+    var n = literals.length * 2L;
+    for (var a : literals) n += a.symbolCount();
+    return Math.toIntExact(n);
+  }
+
+  public Clause copy() {
+    var c = new Clause(literals.clone(), negativeSize);
+    c.goal = goal;
+    c.birth = birth;
+    c.selected = selected;
+    c.splits = splits;
+    return c;
   }
 
   public Clause renameVars() {
@@ -29,7 +62,41 @@ public final class Clause {
                 return a;
               });
     }
-    return new Clause(v, negativeSize);
+    var c = new Clause(v, negativeSize);
+    c.goal = goal;
+    c.birth = birth;
+    c.selected = selected;
+    c.splits = splits;
+    return c;
+  }
+
+  // Sets of splits
+  static int[] union(int[] a, int[] b) {
+    if (a.length == 0 || a == b) return b;
+    if (b.length == 0) return a;
+    var v = new int[a.length + b.length];
+    int i = 0, j = 0, n = 0;
+    while (i < a.length && j < b.length)
+      if (a[i] < b[j]) v[n++] = a[i++];
+      else if (b[j] < a[i]) v[n++] = b[j++];
+      else {
+        v[n++] = a[i++];
+        j++;
+      }
+    while (i < a.length) v[n++] = a[i++];
+    while (j < b.length) v[n++] = b[j++];
+    return Arrays.copyOf(v, n);
+  }
+
+  static boolean subset(int[] a, int[] b) {
+    if (a.length > b.length) return false;
+    var j = 0;
+    for (var x : a) {
+      while (j < b.length && b[j] < x) j++;
+      if (j == b.length || b[j] != x) return false;
+      j++;
+    }
+    return true;
   }
 
   @Override
@@ -43,6 +110,47 @@ public final class Clause {
     return free;
   }
 
+  // Splits the clause into parts that share no variables, each ground literal a part of its own.
+  // The clause holds if any part does
+  public List<Clause> components() {
+    // Literal i is in the same component as literal parent[i]
+    var parent = new int[literals.length];
+    var first = new HashMap<Term, Integer>();
+    for (var i = 0; i < literals.length; i++) {
+      parent[i] = i;
+      var free = new LinkedHashSet<Term>();
+      literals[i].freeVars(Set.of(), free);
+      for (var x : free) {
+        var j = first.putIfAbsent(x, i);
+        if (j == null) continue;
+        while (parent[j] != j) j = parent[j];
+        var k = i;
+        while (parent[k] != k) k = parent[k];
+        parent[Math.max(j, k)] = Math.min(j, k);
+      }
+    }
+
+    var v = new ArrayList<Clause>();
+    var component = new int[literals.length];
+    for (var i = 0; i < literals.length; i++) {
+      var j = i;
+      while (parent[j] != j) j = parent[j];
+      if (j == i) {
+        component[i] = v.size();
+        v.add(null);
+      } else component[i] = component[j];
+    }
+    if (v.size() == 1) return List.of(this);
+    for (var k = 0; k < v.size(); k++) {
+      var negative = new ArrayList<Term>();
+      var positive = new ArrayList<Term>();
+      for (var i = 0; i < literals.length; i++)
+        if (component[i] == k) (i < negativeSize ? negative : positive).add(literals[i]);
+      v.set(k, new Clause(negative, positive));
+    }
+    return v;
+  }
+
   public static List<Clause> replace(FMap map, List<Clause> clauses) {
     // TODO: delete
     var v = new ArrayList<Clause>(clauses.size());
@@ -81,6 +189,7 @@ public final class Clause {
     if (tautology(negative, positive)) {
       literals = new Term[] {Term.TRUE};
       negativeSize = 0;
+      weight = weight(literals);
       return;
     }
 
@@ -89,6 +198,7 @@ public final class Clause {
     literals = new Term[negativeSize + positive.size()];
     for (var i = 0; i < negativeSize; i++) literals[i] = negative.get(i);
     for (var i = 0; i < positive.size(); i++) literals[negativeSize + i] = positive.get(i);
+    weight = weight(literals);
   }
 
   public Term[] negative() {
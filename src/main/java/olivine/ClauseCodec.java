@@ -0,0 +1,170 @@
+package olivine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Encodes clauses as flat arrays of ints, for storage outside the heap's object graph. Symbols and
+// types are replaced by numbers from a table shared by every clause encoded with the same codec,
+// and variables are numbered from 0 in order of first occurrence within the clause. Terms are
+// written in prefix order, each node as one int whose low two bits give its kind:
+//   VAR       variable number
+//   SYMBOL    symbol number, for any leaf other than a variable
+//   COMPOUND  tag ordinal, plus the number of arguments shifted left by TAG_BITS; arguments follow
+//   CAST      type number; the operand follows
+// The clause header gives the length of the encoding, the negative and total literal counts,
+// flags, birth and number of variables, followed by the type of each variable; literals follow,
+// then, if the flags say so, the number of splits and the splits
+public final class ClauseCodec {
+  private static final int VAR = 0;
+  private static final int SYMBOL = 1;
+  private static final int COMPOUND = 2;
+  private static final int CAST = 3;
+
+  private static final int TAG_BITS = 6;
+  private static final Tag[] TAGS = Tag.values();
+
+  // Length, negative literals, literals, flags, birth (two ints), variables
+  private static final int HEADER = 7;
+
+  private static final int GOAL = 1;
+  private static final int SPLITS = 2;
+
+  private final List<Object> symbols = new ArrayList<>();
+  private final Map<Object, Integer> ids = new HashMap<>();
+
+  public ClauseCodec() {}
+
+  // Decodes clauses encoded by another codec, with its symbols replaced by those in the list, which
+  // correspond one for one
+  ClauseCodec(List<Object> symbols) {
+    for (var a : symbols) {
+      ids.putIfAbsent(a, this.symbols.size());
+      this.symbols.add(a);
+    }
+  }
+
+  // Symbols and types, numbered in order of first occurrence
+  List<Object> symbols() {
+    return symbols;
+  }
+
+  private int id(Object a) {
+    var i = ids.get(a);
+    if (i == null) {
+      i = symbols.size();
+      symbols.add(a);
+      ids.put(a, i);
+    }
+    return i;
+  }
+
+  // Growable output buffer
+  private int[] out = new int[64];
+  private int n;
+  private final Map<Var, Integer> vars = new HashMap<>();
+  private final List<Type> varTypes = new ArrayList<>();
+
+  private void emit(int x) {
+    if (n == out.length) {
+      var out1 = new int[n * 2];
+      System.arraycopy(out, 0, out1, 0, n);
+      out = out1;
+    }
+    out[n++] = x;
+  }
+
+  private void encode(Term a) {
+    if (a instanceof Var x) {
+      var i = vars.get(x);
+      if (i == null) {
+        i = vars.size();
+        vars.put(x, i);
+        varTypes.add(x.type());
+      }
+      emit(i << 2 | VAR);
+      return;
+    }
+    var size = a.size();
+    if (size == 0) {
+      emit(id(a) << 2 | SYMBOL);
+      return;
+    }
+    var tag = a.tag();
+    if (tag == Tag.CAST) emit(id(a.type()) << 2 | CAST);
+    else emit((size << TAG_BITS | tag.ordinal()) << 2 | COMPOUND);
+    for (var b : a) encode(b);
+  }
+
+  public int[] encode(Clause c) {
+    n = 0;
+    vars.clear();
+    varTypes.clear();
+    for (var a : c.literals) encode(a);
+    if (c.splits.length > 0) {
+      emit(c.splits.length);
+      for (var x : c.splits) emit(x);
+    }
+
+    // Now the number of variables is known, the header can go in front
+    var header = HEADER + varTypes.size();
+    var v = new int[header + n];
+    v[0] = v.length;
+    v[1] = c.negativeSize;
+    v[2] = c.literals.length;
+    v[3] = (c.goal ? GOAL : 0) | (c.splits.length > 0 ? SPLITS : 0);
+    v[4] = (int) (c.birth >>> 32);
+    v[5] = (int) c.birth;
+    v[6] = varTypes.size();
+    for (var i = 0; i < varTypes.size(); i++) v[HEADER + i] = id(varTypes.get(i));
+    System.arraycopy(out, 0, v, header, n);
+    return v;
+  }
+
+  // Decoding reads from an array at a position that moves along as it goes
+  private int[] in;
+  private int i;
+  private Var[] decodedVars;
+
+  private Term decode() {
+    var x = in[i++];
+    var payload = x >>> 2;
+    return switch (x & 3) {
+      case VAR -> decodedVars[payload];
+      case SYMBOL -> (Term) symbols.get(payload);
+      case CAST -> Term.cast((Type) symbols.get(payload), decode());
+      default -> {
+        var tag = TAGS[payload & (1 << TAG_BITS) - 1];
+        var v = new Term[payload >>> TAG_BITS];
+        for (var j = 0; j < v.length; j++) v[j] = decode();
+        yield Term.of(tag, v);
+      }
+    };
+  }
+
+  // The encoded clause starting at v[start] has length v[start]
+  public Clause decode(int[] v, int start) {
+    in = v;
+    i = start + HEADER;
+    decodedVars = new Var[v[start + 6]];
+    for (var j = 0; j < decodedVars.length; j++)
+      decodedVars[j] = new Var((Type) symbols.get(v[i++]));
+    var literals = new Term[v[start + 2]];
+    for (var j = 0; j < literals.length; j++) literals[j] = decode();
+    var splits = Clause.NO_SPLITS;
+    if ((v[start + 3] & SPLITS) != 0) {
+      splits = new int[v[i++]];
+      for (var j = 0; j < splits.length; j++) splits[j] = v[i++];
+    }
+    assert i == start + v[start];
+    in = null;
+    decodedVars = null;
+
+    var c = new Clause(literals, v[start + 1]);
+    c.splits = splits;
+    c.goal = (v[start + 3] & GOAL) != 0;
+    c.birth = (long) v[start + 4] << 32 | v[start + 5] & 0xffffffffL;
+    return c;
+  }
+}
@@ -0,0 +1,230 @@
+package olivine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Clauses saved in binary form, so a problem converted to clauses once can be loaded again much
+// faster than it can be parsed. Integers are big-endian. A file holds
+//   magic number and version
+//   number of symbols, then each symbol as a byte giving its kind, followed by its name, type or
+//     value; these are the symbols and types a ClauseCodec numbers in order of first occurrence
+//   number of ints, then the clauses encoded by that codec, one after another
+public final class ClauseFile {
+  private static final int MAGIC = 0x4f4c4346;
+  private static final int VERSION = 1;
+
+  private ClauseFile() {}
+
+  // Symbols of the kinds a ClauseCodec can refer to
+  private static final int TYPE = 0;
+  private static final int GLOBAL_VAR = 1;
+  private static final int FUNC = 2;
+  private static final int DISTINCT_OBJECT = 3;
+  private static final int INTEGER = 4;
+  private static final int RATIONAL = 5;
+  private static final int REAL = 6;
+  private static final int FALSE = 7;
+  private static final int TRUE = 8;
+
+  private static final Kind[] KINDS = Kind.values();
+
+  private static void writeType(DataOutput out, Type type) throws IOException {
+    out.writeByte(type.kind().ordinal());
+    switch (type.kind()) {
+      case OPAQUE -> out.writeUTF(type.toString());
+      case FUNC -> {
+        out.writeInt(type.size());
+        for (var i = 0; i < type.size(); i++) writeType(out, type.get(i));
+      }
+    }
+  }
+
+  // A file that is cut short or corrupt gives IOException, like one that cannot be read
+  private static Type readType(DataInput in, Map<String, OpaqueType> types) throws IOException {
+    var k = in.readByte();
+    if (k < 0 || k >= KINDS.length) throw new IOException(k + ": unknown type");
+    return switch (KINDS[k]) {
+      case BOOLEAN -> Type.BOOLEAN;
+      case INDIVIDUAL -> Type.INDIVIDUAL;
+      case INTEGER -> Type.INTEGER;
+      case RATIONAL -> Type.RATIONAL;
+      case REAL -> Type.REAL;
+      case OPAQUE -> {
+        var name = in.readUTF();
+        yield types.computeIfAbsent(name, OpaqueType::new);
+      }
+      case FUNC -> {
+        var n = in.readInt();
+        if (n < 1) throw new IOException(n + ": invalid function type size");
+        var v = new Type[n];
+        for (var i = 0; i < v.length; i++) v[i] = readType(in, types);
+        yield Type.of(Kind.FUNC, v);
+      }
+    };
+  }
+
+  private static void writeName(DataOutput out, String name) throws IOException {
+    out.writeBoolean(name != null);
+    if (name != null) out.writeUTF(name);
+  }
+
+  private static String readName(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeSymbol(DataOutput out, Object a) throws IOException {
+    if (a instanceof Type type) {
+      out.writeByte(TYPE);
+      writeType(out, type);
+      return;
+    }
+    var b = (Term) a;
+    switch (b.tag()) {
+      case GLOBAL_VAR -> {
+        out.writeByte(GLOBAL_VAR);
+        writeName(out, ((Global) b).name);
+        writeType(out, b.type());
+      }
+      case FUNC -> {
+        out.writeByte(FUNC);
+        writeName(out, ((Global) b).name);
+        writeType(out, b.type());
+      }
+      case DISTINCT_OBJECT -> {
+        out.writeByte(DISTINCT_OBJECT);
+        out.writeUTF(b.toString());
+      }
+      case INTEGER -> {
+        out.writeByte(INTEGER);
+        out.writeUTF(b.integerValue().toString());
+      }
+      case RATIONAL -> {
+        out.writeByte(b.type() == Type.REAL ? REAL : RATIONAL);
+        out.writeUTF(b.rationalValue().toString());
+      }
+      case FALSE -> out.writeByte(FALSE);
+      case TRUE -> out.writeByte(TRUE);
+      default -> throw new IllegalArgumentException(b.toString());
+    }
+  }
+
+  private static Object readSymbol(DataInput in, Map<String, OpaqueType> types) throws IOException {
+    var k = in.readByte();
+    return switch (k) {
+      case TYPE -> readType(in, types);
+      case GLOBAL_VAR -> {
+        var name = readName(in);
+        yield new GlobalVar(name, readType(in, types));
+      }
+      case FUNC -> {
+        var name = readName(in);
+        var type = readType(in, types);
+        var params = new Type[type.size() - 1];
+        for (var i = 0; i < params.length; i++) params[i] = type.get(1 + i);
+        yield new Func(name, type.get(0), params);
+      }
+      case DISTINCT_OBJECT -> new DistinctObject(in.readUTF());
+      case INTEGER -> Term.of(new BigInteger(in.readUTF()));
+      case RATIONAL -> Term.of(Type.RATIONAL, BigRational.of(in.readUTF()));
+      case REAL -> Term.of(Type.REAL, BigRational.of(in.readUTF()));
+      case FALSE -> Term.FALSE;
+      case TRUE -> Term.TRUE;
+      default -> throw new IOException(k + ": unknown symbol");
+    };
+  }
+
+  static void writeSymbols(DataOutput out, List<Object> symbols) throws IOException {
+    out.writeInt(symbols.size());
+    for (var a : symbols) writeSymbol(out, a);
+  }
+
+  // Every symbol read is new, apart from numbers and truth values, which are interned
+  static List<Object> readSymbols(DataInput in) throws IOException {
+    var types = new HashMap<String, OpaqueType>();
+    var symbols = new ArrayList<Object>();
+    for (var n = in.readInt(); n > 0; n--) symbols.add(readSymbol(in, types));
+    return symbols;
+  }
+
+  // In one piece rather than an int at a time
+  static void writeInts(DataOutput out, int[] v) throws IOException {
+    var buf = ByteBuffer.allocate(v.length * 4);
+    buf.asIntBuffer().put(v);
+    out.writeInt(v.length);
+    out.write(buf.array());
+  }
+
+  static int[] readInts(DataInput in) throws IOException {
+    var n = in.readInt();
+    if (n < 0) throw new IOException(n + ": invalid length");
+    var v = new int[n];
+    var bytes = new byte[v.length * 4];
+    in.readFully(bytes);
+    ByteBuffer.wrap(bytes).asIntBuffer().get(v);
+    return v;
+  }
+
+  // One clause after another
+  static int[] encode(ClauseCodec codec, List<Clause> clauses) {
+    var encoded = new ArrayList<int[]>(clauses.size());
+    var n = 0;
+    for (var c : clauses) {
+      var v = codec.encode(c);
+      encoded.add(v);
+      n += v.length;
+    }
+    var v = new int[n];
+    n = 0;
+    for (var w : encoded) {
+      System.arraycopy(w, 0, v, n, w.length);
+      n += w.length;
+    }
+    return v;
+  }
+
+  static void decode(ClauseCodec codec, int[] v, List<Clause> clauses) {
+    for (var i = 0; i < v.length; i += v[i]) clauses.add(codec.decode(v, i));
+  }
+
+  public static void save(List<Clause> clauses, String file) throws IOException {
+    var codec = new ClauseCodec();
+    var v = encode(codec, clauses);
+    try (var out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(file))))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeSymbols(out, codec.symbols());
+      writeInts(out, v);
+    }
+  }
+
+  public static void load(String file, InputStream stream, CNF cnf) throws IOException {
+    var in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+    List<Object> symbols;
+    int[] v;
+    try {
+      if (in.readInt() != MAGIC) throw new ParseError(file + ": not a clause file");
+      if (in.readInt() != VERSION) throw new ParseError(file + ": clause file of another version");
+      symbols = readSymbols(in);
+      v = readInts(in);
+    } catch (EOFException e) {
+      throw new ParseError(file + ": clause file ends early");
+    }
+    decode(new ClauseCodec(symbols), v, cnf.clauses);
+  }
+}
@@ -0,0 +1,243 @@
+package olivine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Solves problems sent as JSON lines, so one JVM, with its compiled code and interned terms, serves
+// many problems. Each request is an object with
+//   id        any value, echoed in the response
+//   file      path of the problem, or
+//   text      the problem itself
+//   language  tptp or dimacs; by default, from the file extension
+//   timeout   seconds
+//   steps     iterations of the search
+//   options   object of prover options by long name, such as {"selection": "max-l-complex"}
+// Requests are solved concurrently, and each response is written as soon as it is ready, as an
+// object with the id, a result of sat, unsat, unknown (the search gave up), timeout, inappropriate
+// or error, the time in seconds, the statistics of the search, and a message for errors
+final class Daemon {
+  private final Strategy strategy;
+  private final String portfolio;
+  private final ExecutorService workers;
+  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+  // Requests inherit the strategy and portfolio given on the command line, and can vary them
+  Daemon(int workers, Strategy strategy, String portfolio) {
+    this.strategy = strategy;
+    this.portfolio = portfolio;
+    this.workers = Executors.newFixedThreadPool(workers);
+  }
+
+  void close() {
+    workers.shutdownNow();
+    timer.shutdownNow();
+  }
+
+  // Interrupts the thread solving a request, if it has not finished yet
+  private static final class Deadline implements Runnable {
+    final Thread thread = Thread.currentThread();
+    boolean finished;
+    boolean expired;
+
+    @Override
+    public synchronized void run() {
+      if (finished) return;
+      expired = true;
+      thread.interrupt();
+    }
+
+    // Returns whether the deadline expired, and leaves the thread not interrupted, ready for the
+    // next request
+    synchronized boolean finish() {
+      finished = true;
+      Thread.interrupted();
+      return expired;
+    }
+  }
+
+  private static Prover.Language language(Object s) {
+    if (s == null) return null;
+    return Prover.Language.valueOf(s.toString().toUpperCase());
+  }
+
+  private boolean solve(Map<?, ?> request) throws IOException {
+    var strategy = this.strategy.copy();
+    var portfolio = this.portfolio;
+    if (request.get("options") instanceof Map<?, ?> options)
+      for (var kv : options.entrySet()) {
+        var option = kv.getKey().toString();
+        var arg = kv.getValue() == null ? null : kv.getValue().toString();
+        if (option.equals("portfolio")) {
+          Portfolio.of(arg, strategy);
+          portfolio = arg;
+        } else strategy.set(option, arg);
+      }
+    var steps = request.get("steps") instanceof Long n ? n : Long.MAX_VALUE;
+    var specified = language(request.get("language"));
+
+    if (request.get("text") instanceof String text) {
+      if (specified == null) throw new IllegalArgumentException("language not specified");
+      return Prover.solve(
+          specified, "text", Etc.stringInputStream(text), strategy, portfolio, steps);
+    }
+    if (!(request.get("file") instanceof String file))
+      throw new IllegalArgumentException("expected file or text");
+    try (var stream = new BufferedInputStream(new FileInputStream(file))) {
+      return Prover.solve(
+          Prover.language(specified, file), file, stream, strategy, portfolio, steps);
+    }
+  }
+
+  Map<String, Object> answer(Map<?, ?> request) {
+    var response = new LinkedHashMap<String, Object>();
+    response.put("id", request.get("id"));
+    Stats.reset();
+    var start = System.nanoTime();
+    var deadline = new Deadline();
+    ScheduledFuture<?> alarm = null;
+    if (request.get("timeout") instanceof Number seconds)
+      alarm = timer.schedule(deadline, (long) (seconds.doubleValue() * 1e9), TimeUnit.NANOSECONDS);
+    String result;
+    String message = null;
+    try {
+      result = solve(request) ? "sat" : "unsat";
+    } catch (Fail e) {
+      result = "unknown";
+    } catch (Inappropriate e) {
+      result = "inappropriate";
+    } catch (Throwable e) {
+      result = "error";
+      message = e.toString();
+    }
+    if (alarm != null) alarm.cancel(false);
+    if (deadline.finish()) {
+      result = "timeout";
+      message = null;
+    }
+    response.put("result", result);
+    response.put("time", (System.nanoTime() - start) * 1e-9);
+    response.put("stats", Stats.get());
+    if (message != null) response.put("message", message);
+    return response;
+  }
+
+  Future<Map<String, Object>> submit(Map<?, ?> request) {
+    return workers.submit(() -> answer(request));
+  }
+
+  private static void write(Writer out, Map<String, Object> response) throws IOException {
+    synchronized (out) {
+      out.write(Json.toString(response));
+      out.write('\n');
+      out.flush();
+    }
+  }
+
+  // Serves one stream of requests, returning when the input has ended and every response has been
+  // written
+  void serve(BufferedReader in, Writer out) throws IOException, InterruptedException {
+    var pending = new ArrayList<Future<?>>();
+    for (; ; ) {
+      var line = in.readLine();
+      if (line == null) break;
+      if (line.isBlank()) continue;
+      Map<?, ?> request;
+      try {
+        if (!(Json.parse(line) instanceof Map<?, ?> map))
+          throw new ParseError("json: expected object");
+        request = map;
+      } catch (RuntimeException e) {
+        // A line that cannot be read is answered like any other bad request, and the rest carry on
+        var response = new LinkedHashMap<String, Object>();
+        response.put("id", null);
+        response.put("result", "error");
+        response.put("message", e instanceof ParseError ? e.getMessage() : e.toString());
+        write(out, response);
+        continue;
+      }
+      pending.add(
+          workers.submit(
+              () -> {
+                write(out, answer(request));
+                return null;
+              }));
+    }
+    for (var future : pending)
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        // The connection has gone, so there is nowhere to report it
+      }
+  }
+
+  void serve() throws IOException, InterruptedException {
+    serve(
+        new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+        new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+  }
+
+  // Serves each connection to a Unix domain socket as a stream of requests, until killed
+  void serve(Path socket) throws IOException {
+    Files.deleteIfExists(socket);
+    try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(socket));
+      socket.toFile().deleteOnExit();
+      for (; ; ) {
+        var channel = server.accept();
+        var thread =
+            new Thread(
+                () -> {
+                  // Read from the channel directly. A stream from Channels would hold the channel's
+                  // blocking lock while waiting for the next request, and so stop responses to
+                  // earlier requests being written
+                  var in =
+                      new InputStream() {
+                        @Override
+                        public int read() throws IOException {
+                          var b = new byte[1];
+                          return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+                        }
+
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                          return channel.read(ByteBuffer.wrap(b, off, len));
+                        }
+                      };
+                  try (channel) {
+                    serve(
+                        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)),
+                        Channels.newWriter(channel, StandardCharsets.UTF_8));
+                  } catch (IOException | InterruptedException ignored) {
+                    // The client has gone
+                  }
+                });
+        thread.setDaemon(true);
+        thread.start();
+      }
+    }
+  }
+}
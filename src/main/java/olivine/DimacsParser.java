@@ -3,126 +3,194 @@ package olivine;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
+// Reads DIMACS straight into ints, from a buffer filled a block at a time, so a problem with
+// millions of clauses takes little more memory than its literals, and no terms are made unless the
+// clauses are wanted as terms
 public final class DimacsParser {
-  // Problem state
-  private final Map<String, GlobalVar> variables = new HashMap<>();
+  // Variables are limited so a SAT solver can number literals from them
+  private static final int MAX_VARIABLE = (1 << 29) - 1;
+
+  // The clauses of a problem, one after another, each ending with 0 as in the file
+  public static final class Problem {
+    public final int vars;
+    public final int clauses;
+    public final int[] literals;
+    public final int size;
+
+    private Problem(int vars, int clauses, int[] literals, int size) {
+      this.vars = vars;
+      this.clauses = clauses;
+      this.literals = literals;
+      this.size = size;
+    }
+
+    // Propositional clauses from another input, with a variable for each atom
+    public static Problem of(List<Clause> clauses) {
+      assert Clause.propositional(clauses);
+      var vars = new HashMap<Term, Integer>();
+      var literals = new int[1024];
+      var size = 0;
+      for (var c : clauses) {
+        if (size + c.literals.length + 1 > literals.length)
+          literals =
+              Arrays.copyOf(literals, Math.max(literals.length * 2, size + c.literals.length + 1));
+        for (var i = 0; i < c.literals.length; i++) {
+          var x = vars.computeIfAbsent(c.literals[i], a -> vars.size() + 1);
+          literals[size++] = i < c.negativeSize ? -x : x;
+        }
+        literals[size++] = 0;
+      }
+      return new Problem(vars.size(), clauses.size(), literals, size);
+    }
+  }
 
   // File state
   private final String file;
   private final InputStream stream;
+  private final byte[] buf = new byte[1 << 16];
+  private int pos;
+  private int end;
   private int c;
   private int line = 1;
-  private int tok;
-  private String tokString;
+
+  // Problem state
+  private int vars;
+  private int clauses;
+  private int[] literals = new int[1024];
+  private int size;
 
   private ParseError err(String s) {
     return new ParseError(String.format("%s:%d: %s", file, line, s));
   }
 
-  // Tokenizer
-  private void readc(StringBuilder sb) throws IOException {
-    sb.append((char) c);
-    c = stream.read();
+  private int read() throws IOException {
+    if (pos == end) {
+      pos = 0;
+      end = stream.read(buf, 0, buf.length);
+      if (end <= 0) {
+        end = 0;
+        return -1;
+      }
+    }
+    return buf[pos++] & 0xff;
+  }
+
+  private void skipSpace() throws IOException {
+    while (c == ' ' || c == '\t' || c == '\r' || c == '\f') c = read();
+  }
+
+  private int integer() throws IOException {
+    long n = 0;
+    do {
+      n = n * 10 + c - '0';
+      if (n > MAX_VARIABLE) throw err("variable out of range");
+      c = read();
+    } while (Etc.isDigit(c));
+    return (int) n;
   }
 
-  private void lex() throws IOException {
+  private void add(int x) {
+    if (size == literals.length) literals = Arrays.copyOf(literals, size * 2);
+    literals[size++] = x;
+  }
+
+  private DimacsParser(String file, InputStream stream) throws IOException {
+    this.file = file;
+    this.stream = stream;
+    c = read();
+
+    // The clause being read starts here
+    var start = 0;
     for (; ; ) {
-      tok = c;
       switch (c) {
         case 'c' -> {
-          do c = stream.read();
+          do c = read();
           while (c != '\n' && c >= 0);
-          continue;
         }
         case '\n' -> {
           line++;
-          c = stream.read();
-          continue;
+          c = read();
         }
-        case ' ', '\f', '\r', '\t' -> {
-          c = stream.read();
-          continue;
+        case ' ', '\f', '\r', '\t' -> c = read();
+        case 'p' -> {
+          // Problem statistics, which give an idea of how many literals to expect. The header may
+          // be wrong, so the guess is capped, and the array grows as usual beyond it
+          if (size > 0) throw err("problem line after clauses");
+          c = read();
+          skipSpace();
+          for (var i = 0; i < 3; i++) {
+            if (c != "cnf".charAt(i)) throw err("expected 'cnf'");
+            c = read();
+          }
+          skipSpace();
+          if (!Etc.isDigit(c)) throw err("expected integer");
+          integer();
+          skipSpace();
+          if (!Etc.isDigit(c)) throw err("expected integer");
+          var n = integer();
+          literals = new int[Math.max(Math.min(n, 1 << 20) * 4, 1024)];
         }
-        case '1', '2', '3', '4', '5', '6', '7', '8', '9' -> {
-          var sb = new StringBuilder();
-          do readc(sb);
-          while (Etc.isDigit(c));
-          tok = '9';
-          tokString = sb.toString();
+        case '-' -> {
+          c = read();
+          if (!Etc.isDigit(c) || c == '0') throw err("expected variable");
+          var x = integer();
+          vars = Math.max(vars, x);
+          add(-x);
+        }
+        case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> {
+          var x = integer();
+          vars = Math.max(vars, x);
+          add(x);
+          if (x == 0) {
+            clauses++;
+            start = size;
+          }
+        }
+        case '%', -1 -> {
+          // SATLIB files end with a line of %, and then 0
+          if (size > start) {
+            add(0);
+            clauses++;
+          }
+          return;
         }
-        default -> c = stream.read();
+        default -> throw err("syntax error");
       }
-      return;
     }
   }
 
-  // parser
-  GlobalVar variable() throws IOException {
-    var a = variables.get(tokString);
-    if (a == null) {
-      a = new GlobalVar(tokString, Type.BOOLEAN);
-      variables.put(tokString, a);
-    }
-    lex();
-    return a;
-  }
-
-  // top level
-  private DimacsParser(String file, InputStream stream, CNF cnf) throws IOException {
-    this.file = file;
-    this.stream = stream;
-    c = stream.read();
-    lex();
-
-    // problem statistics
-    if (tok == 'p') {
-      while (0 <= c && c <= ' ') c = stream.read();
-
-      // cnf
-      if (c != 'c') throw err("expected 'cnf'");
-      c = stream.read();
-      if (c != 'n') throw err("expected 'cnf'");
-      c = stream.read();
-      if (c != 'f') throw err("expected 'cnf'");
-      c = stream.read();
-      lex();
-
-      // variables
-      if (tok != '9') throw err("expected integer");
-      lex();
-
-      // clauses
-      if (tok != '9') throw err("expected integer");
-      lex();
-    }
+  public static Problem read(String file, InputStream stream) throws IOException {
+    var start = System.nanoTime();
+    var p = new DimacsParser(file, stream);
 
-    // clauses
-    var literals = new ArrayList<Term>();
-    for (; ; )
-      switch (tok) {
-        case -1 -> {
-          if (!literals.isEmpty()) cnf.add(Term.of(Tag.OR, literals));
-          return;
-        }
-        case '-' -> {
-          lex();
-          if (tok != '9') throw err("expected variable");
-          literals.add(Term.of(Tag.NOT, variable()));
-        }
-        case '9' -> literals.add(variable());
-        case '0' -> {
-          lex();
-          cnf.add(Term.of(Tag.OR, literals));
-          literals.clear();
-        }
-        default -> throw err("syntax error");
-      }
+    // The problem is kept while it is solved, so it should not keep the spare capacity too
+    var literals = p.literals.length == p.size ? p.literals : Arrays.copyOf(p.literals, p.size);
+    Stats.inc("input literals", p.size - p.clauses);
+    Stats.inc("dimacs bytes", 4L * literals.length);
+    Stats.inc("dimacs parse ms", (System.nanoTime() - start) / 1_000_000);
+    return new Problem(p.vars, p.clauses, literals, p.size);
   }
 
+  // The clauses as terms, for the parts of the prover that work with them
   public static void parse(String file, InputStream stream, CNF cnf) throws IOException {
-    new DimacsParser(file, stream, cnf);
+    var problem = read(file, stream);
+    var variables = new GlobalVar[problem.vars + 1];
+    var literals = new ArrayList<Term>();
+    for (var i = 0; i < problem.size; i++) {
+      var x = problem.literals[i];
+      if (x == 0) {
+        cnf.add(Term.of(Tag.OR, literals));
+        literals.clear();
+        continue;
+      }
+      var v = Math.abs(x);
+      var a = variables[v];
+      if (a == null) a = variables[v] = new GlobalVar(Integer.toString(v), Type.BOOLEAN);
+      literals.add(x < 0 ? Term.of(Tag.NOT, a) : a);
+    }
   }
 }
@@ -17,6 +17,7 @@ public final class Dpll {
 
   private boolean sat(List<Clause> clauses) {
     if (steps-- == 0) throw new Fail();
+    if (Thread.currentThread().isInterrupted()) throw new Fail();
     if (isFalse(clauses)) return false;
     if (isTrue(clauses)) return true;
 
@@ -0,0 +1,157 @@
+package olivine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Fingerprint indexing (Schulz, 'Fingerprint Indexing for Paramodulation and Rewriting', 2012).
+// Each term is summarized by what it has at a fixed set of sample positions: a symbol, a variable,
+// a position below a variable, or no such position. Two terms can only unify if their fingerprints
+// are compatible at every sample position, so retrieval returns a superset of the actual
+// candidates, which the caller still needs to check with a full unification or match
+public final class FingerprintIndex<T> {
+  // Sample positions, as paths of argument indexes. For a call, the function itself is the symbol
+  // at that position, so argument 0 is the first actual argument
+  private static final int[][] POSITIONS = {{}, {0}, {1}, {2}, {0, 0}, {0, 1}, {1, 0}, {1, 1}};
+
+  // Features other than symbols
+  private static final int VAR = -1;
+  private static final int BELOW_VAR = -2;
+  private static final int NONE = -3;
+  private static final int UNKNOWN = -4;
+
+  private final Map<Object, Integer> symbols = new HashMap<>();
+  private final Map<Integer, Object> root = new HashMap<>();
+
+  private static int arity(Term a) {
+    var n = a.size();
+    return a.tag() == Tag.CALL ? n - 1 : n;
+  }
+
+  private static Term arg(Term a, int i) {
+    return a.get(a.tag() == Tag.CALL ? i + 1 : i);
+  }
+
+  private static Object symbol(Term a) {
+    if (a.tag() == Tag.CALL) return a.get(0);
+    if (a.size() == 0) return a;
+    return a.tag();
+  }
+
+  private int feature(Term a, int[] position, boolean add) {
+    for (var i : position) {
+      if (a instanceof Var) return BELOW_VAR;
+      if (i >= arity(a)) return NONE;
+      a = arg(a, i);
+    }
+    if (a instanceof Var) return VAR;
+    var symbol = symbol(a);
+    if (add) return symbols.computeIfAbsent(symbol, k -> symbols.size());
+    return symbols.getOrDefault(symbol, UNKNOWN);
+  }
+
+  private int[] key(Term a, boolean add) {
+    var key = new int[POSITIONS.length];
+    for (var i = 0; i < key.length; i++) key[i] = feature(a, POSITIONS[i], add);
+    return key;
+  }
+
+  // Indexed feature, and query feature, could belong to terms that unify
+  private static boolean unifiable(int indexed, int query) {
+    if (indexed == BELOW_VAR || query == BELOW_VAR) return true;
+    if (indexed == NONE || query == NONE) return indexed == query;
+    if (indexed == VAR || query == VAR) return true;
+    return indexed == query;
+  }
+
+  // Indexed feature could belong to a term that matches onto (is more general than) the query
+  private static boolean generalizes(int indexed, int query) {
+    return switch (indexed) {
+      case BELOW_VAR -> true;
+      case VAR -> query != NONE && query != BELOW_VAR;
+      case NONE -> query == NONE || query == BELOW_VAR;
+      default -> indexed == query;
+    };
+  }
+
+  public void add(Term a, T value) {
+    var key = key(a, true);
+    Map<Integer, Object> node = root;
+    for (var i = 0; i < key.length - 1; i++) {
+      @SuppressWarnings("unchecked")
+      var child = (Map<Integer, Object>) node.computeIfAbsent(key[i], k -> new HashMap<>());
+      node = child;
+    }
+    @SuppressWarnings("unchecked")
+    var values = (List<T>) node.computeIfAbsent(key[key.length - 1], k -> new ArrayList<T>());
+    values.add(value);
+  }
+
+  public void remove(Term a, T value) {
+    remove(key(a, true), value, 0, root);
+  }
+
+  // Returns whether the node is now empty, so the caller can prune it
+  private boolean remove(int[] key, T value, int i, Map<Integer, Object> node) {
+    var child = node.get(key[i]);
+    if (child == null) return false;
+    boolean empty;
+    if (i == key.length - 1) {
+      @SuppressWarnings("unchecked")
+      var values = (List<T>) child;
+      for (var j = 0; j < values.size(); j++)
+        if (values.get(j) == value) {
+          values.remove(j);
+          break;
+        }
+      empty = values.isEmpty();
+    } else {
+      @SuppressWarnings("unchecked")
+      var child1 = (Map<Integer, Object>) child;
+      empty = remove(key, value, i + 1, child1);
+    }
+    if (empty) node.remove(key[i]);
+    return node.isEmpty();
+  }
+
+  // Calls f on every indexed value whose term may unify with a
+  public void forUnifiable(Term a, Consumer<T> f) {
+    search(key(a, false), true, f, 0, root);
+  }
+
+  // Calls f on every indexed value whose term may match onto a
+  public void forGeneralizations(Term a, Consumer<T> f) {
+    search(key(a, false), false, f, 0, root);
+  }
+
+  private void search(int[] key, boolean unify, Consumer<T> f, int i, Object node) {
+    if (i == key.length) {
+      @SuppressWarnings("unchecked")
+      var values = (List<T>) node;
+      for (var value : values) f.accept(value);
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    var children = (Map<Integer, Object>) node;
+    var k = key[i];
+
+    // Common case: the query has a known symbol here, so only a few features are compatible,
+    // and they can be looked up directly
+    if (k >= 0) {
+      for (var k1 : new int[] {k, VAR, BELOW_VAR}) {
+        var child = children.get(k1);
+        if (child != null) search(key, unify, f, i + 1, child);
+      }
+      return;
+    }
+
+    // General case
+    for (var kv : children.entrySet()) {
+      var k1 = kv.getKey();
+      if (unify ? unifiable(k1, k) : generalizes(k1, k))
+        search(key, unify, f, i + 1, kv.getValue());
+    }
+  }
+}
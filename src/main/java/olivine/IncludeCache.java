@@ -0,0 +1,203 @@
+package olivine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Include files already parsed and converted to clauses, so the axiom sets shared by many problems
+// are not read again for each one. An entry is found by the file and the formulas selected from
+// it, and is used only while the file, and any it includes in turn, have the same modification
+// time and size as when it was read. Entries are kept in memory, the least recently used going
+// first when there are too many, and if a directory is given, are also written there, so separate
+// runs can share them.
+//
+// The clauses of an entry are encoded with a ClauseCodec, and refer to symbols of their own; the
+// parser replaces these with the symbols of the problem that includes the file. On disk, an entry
+// has a header giving its key and files, followed by its symbols and clauses as in a ClauseFile
+final class IncludeCache {
+  private static final int MAGIC = 0x4f4c4943;
+  private static final int VERSION = 1;
+
+  // Encoded clauses to keep in memory, in ints
+  private static final long LIMIT = 1 << 24;
+
+  // A file an entry was read from, as it was then
+  static final class Stamp {
+    final String file;
+    final long time;
+    final long size;
+
+    private Stamp(String file, long time, long size) {
+      this.file = file;
+      this.time = time;
+      this.size = size;
+    }
+
+    Stamp(String file) throws IOException {
+      var attributes = Files.readAttributes(Path.of(file), BasicFileAttributes.class);
+      this.file = file;
+      time = attributes.lastModifiedTime().toMillis();
+      size = attributes.size();
+    }
+
+    boolean current() {
+      try {
+        var stamp = new Stamp(file);
+        return stamp.time == time && stamp.size == size;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+  }
+
+  static final class Entry {
+    final String key;
+    final List<Stamp> stamps;
+    final List<Object> symbols;
+
+    // One encoded clause after another, or null if the file must be parsed in place, because it
+    // depends on the problem that includes it
+    final int[] clauses;
+
+    Entry(String key, List<Stamp> stamps, List<Object> symbols, int[] clauses) {
+      this.key = key;
+      this.stamps = stamps;
+      this.symbols = symbols;
+      this.clauses = clauses;
+    }
+  }
+
+  private final Path dir;
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long size;
+
+  // The directory may be null, to keep entries only in memory
+  IncludeCache(Path dir) {
+    this.dir = dir;
+  }
+
+  // Formula names can contain any character, but the file name cannot contain a null
+  static String key(String file, Set<String> select) {
+    var key = Path.of(file).toAbsolutePath().normalize().toString();
+    if (select == null) return key;
+    var names = new ArrayList<>(select);
+    Collections.sort(names);
+    return key + '\0' + String.join("\0", names);
+  }
+
+  // Returns null if there is no entry, or the files have changed since it was made
+  Entry get(String key) throws IOException {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+    if (entry == null && dir != null) {
+      entry = read(key);
+      if (entry != null) {
+        Stats.inc("include cache reads");
+        remember(entry);
+      }
+    }
+    if (entry == null) return null;
+    for (var stamp : entry.stamps) if (!stamp.current()) return null;
+    return entry;
+  }
+
+  // Entries without clauses are kept only in memory, as another problem may include the file in a
+  // way that does work on its own
+  void put(Entry entry) throws IOException {
+    remember(entry);
+    if (dir != null && entry.clauses != null) write(entry);
+  }
+
+  private static long size(Entry entry) {
+    return entry.clauses == null ? 0 : entry.clauses.length;
+  }
+
+  private synchronized void remember(Entry entry) {
+    var old = entries.put(entry.key, entry);
+    if (old != null) size -= size(old);
+    size += size(entry);
+    var i = entries.values().iterator();
+    while (size > LIMIT && entries.size() > 1) {
+      size -= size(i.next());
+      i.remove();
+    }
+  }
+
+  // Files on disk
+  private Path path(String key) {
+    try {
+      var digest =
+          MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+      return dir.resolve(HexFormat.of().formatHex(digest, 0, 16) + ".clauses");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // Written to a temporary file that then replaces the old one, so runs at the same time never see
+  // half a file
+  private void write(Entry entry) throws IOException {
+    Files.createDirectories(dir);
+    var tmp = Files.createTempFile(dir, null, ".tmp");
+    try {
+      try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(entry.key);
+        out.writeInt(entry.stamps.size());
+        for (var stamp : entry.stamps) {
+          out.writeUTF(stamp.file);
+          out.writeLong(stamp.time);
+          out.writeLong(stamp.size);
+        }
+        ClauseFile.writeSymbols(out, entry.symbols);
+        ClauseFile.writeInts(out, entry.clauses);
+      }
+      Files.move(
+          tmp,
+          path(entry.key),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  // A file that is missing, from another version, for another key that happens to have the same
+  // digest, or cut short or corrupt, is no entry; the include is then parsed from its source
+  private Entry read(String key) {
+    try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path(key))))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key))
+        return null;
+      var stamps = new ArrayList<Stamp>();
+      for (var n = in.readInt(); n > 0; n--)
+        stamps.add(new Stamp(in.readUTF(), in.readLong(), in.readLong()));
+      var symbols = ClauseFile.readSymbols(in);
+      return new Entry(key, stamps, symbols, ClauseFile.readInts(in));
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException | RuntimeException e) {
+      Stats.inc("include cache bad entries");
+      return null;
+    }
+  }
+}
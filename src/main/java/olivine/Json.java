@@ -0,0 +1,212 @@
+package olivine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough JSON for the daemon protocol. Objects are read as maps, arrays as lists, integers as
+// Long, other numbers as Double, and null, true and false as themselves
+public final class Json {
+  private final String s;
+  private int i;
+
+  private Json(String s) {
+    this.s = s;
+  }
+
+  private ParseError err(String message) {
+    return new ParseError(String.format("json:%d: %s", i + 1, message));
+  }
+
+  private void space() {
+    while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+  }
+
+  private boolean eat(char c) {
+    space();
+    if (i < s.length() && s.charAt(i) == c) {
+      i++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(char c) {
+    if (!eat(c)) throw err("expected '" + c + '\'');
+  }
+
+  private boolean word(String t) {
+    if (!s.startsWith(t, i)) return false;
+    i += t.length();
+    return true;
+  }
+
+  private String string() {
+    expect('"');
+    var sb = new StringBuilder();
+    for (; ; ) {
+      if (i == s.length()) throw err("unclosed string");
+      var c = s.charAt(i++);
+      switch (c) {
+        case '"' -> {
+          return sb.toString();
+        }
+        case '\\' -> {
+          if (i == s.length()) throw err("unclosed string");
+          c = s.charAt(i++);
+          switch (c) {
+            case 'b' -> sb.append('\b');
+            case 'f' -> sb.append('\f');
+            case 'n' -> sb.append('\n');
+            case 'r' -> sb.append('\r');
+            case 't' -> sb.append('\t');
+            case 'u' -> {
+              if (i + 4 > s.length()) throw err("unclosed string");
+              var x = 0;
+              for (var j = 0; j < 4; j++) {
+                var d = s.charAt(i + j);
+                if (!(Etc.isDigit(d) || 'a' <= d && d <= 'f' || 'A' <= d && d <= 'F'))
+                  throw err("invalid \\u escape");
+                x = x << 4 | Character.digit(d, 16);
+              }
+              sb.append((char) x);
+              i += 4;
+            }
+            default -> sb.append(c);
+          }
+        }
+        default -> sb.append(c);
+      }
+    }
+  }
+
+  private Object number() {
+    var j = i;
+    if (s.charAt(i) == '-') i++;
+    var integer = true;
+    while (i < s.length()) {
+      var c = s.charAt(i);
+      if (Character.isDigit(c)) i++;
+      else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+        integer = false;
+        i++;
+      } else break;
+    }
+    var t = s.substring(j, i);
+    try {
+      return integer ? (Object) Long.parseLong(t) : (Object) Double.parseDouble(t);
+    } catch (NumberFormatException e) {
+      i = j;
+      throw err(t + ": invalid number");
+    }
+  }
+
+  private Object value() {
+    space();
+    if (i == s.length()) throw err("unexpected end of input");
+    var c = s.charAt(i);
+    switch (c) {
+      case '{' -> {
+        i++;
+        var map = new LinkedHashMap<String, Object>();
+        if (eat('}')) return map;
+        do {
+          space();
+          var key = string();
+          expect(':');
+          map.put(key, value());
+        } while (eat(','));
+        expect('}');
+        return map;
+      }
+      case '[' -> {
+        i++;
+        var v = new ArrayList<>();
+        if (eat(']')) return v;
+        do v.add(value());
+        while (eat(','));
+        expect(']');
+        return v;
+      }
+      case '"' -> {
+        return string();
+      }
+    }
+    if (c == '-' || Character.isDigit(c)) return number();
+    if (word("true")) return true;
+    if (word("false")) return false;
+    if (word("null")) return null;
+    throw err("unexpected '" + c + '\'');
+  }
+
+  public static Object parse(String s) {
+    var json = new Json(s);
+    var a = json.value();
+    json.space();
+    if (json.i < s.length()) throw json.err("unexpected text after value");
+    return a;
+  }
+
+  private static void quote(StringBuilder sb, String s) {
+    sb.append('"');
+    for (var i = 0; i < s.length(); i++) {
+      var c = s.charAt(i);
+      switch (c) {
+        case '"' -> sb.append("\\\"");
+        case '\\' -> sb.append("\\\\");
+        case '\n' -> sb.append("\\n");
+        case '\r' -> sb.append("\\r");
+        case '\t' -> sb.append("\\t");
+        default -> {
+          if (c < ' ') sb.append(String.format("\\u%04x", (int) c));
+          else sb.append(c);
+        }
+      }
+    }
+    sb.append('"');
+  }
+
+  private static void write(StringBuilder sb, Object a) {
+    if (a == null || a instanceof Boolean || a instanceof Long || a instanceof Integer) {
+      sb.append(a);
+      return;
+    }
+    if (a instanceof Number n) {
+      var x = n.doubleValue();
+      if (Double.isFinite(x)) sb.append(x);
+      else sb.append("null");
+      return;
+    }
+    if (a instanceof Map<?, ?> map) {
+      sb.append('{');
+      var more = false;
+      for (var kv : map.entrySet()) {
+        if (more) sb.append(',');
+        more = true;
+        quote(sb, kv.getKey().toString());
+        sb.append(':');
+        write(sb, kv.getValue());
+      }
+      sb.append('}');
+      return;
+    }
+    if (a instanceof List<?> v) {
+      sb.append('[');
+      for (var i = 0; i < v.size(); i++) {
+        if (i > 0) sb.append(',');
+        write(sb, v.get(i));
+      }
+      sb.append(']');
+      return;
+    }
+    quote(sb, a.toString());
+  }
+
+  // On one line, so a stream of values can be read a line at a time
+  public static String toString(Object a) {
+    var sb = new StringBuilder();
+    write(sb, a);
+    return sb.toString();
+  }
+}
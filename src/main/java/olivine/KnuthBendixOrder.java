@@ -1,7 +1,9 @@
 package olivine;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -9,19 +11,32 @@ public final class KnuthBendixOrder {
   private final Map<Term, Integer> weights = new HashMap<>();
 
   public KnuthBendixOrder(List<Clause> clauses) {
-    var globals = new LinkedHashSet<Term>();
-    for (var c : clauses) for (var a : c.literals) a.walkGlobals(globals::add);
+    this(clauses, Precedence.OCCURRENCE);
+  }
+
+  public KnuthBendixOrder(List<Clause> clauses, Precedence precedence) {
+    // Occurrences of each symbol, in order of first occurrence
+    var counts = new LinkedHashMap<Term, Integer>();
+    for (var c : clauses)
+      for (var a : c.literals) a.walkGlobals(b -> counts.merge(b, 1, Integer::sum));
+    var globals = new ArrayList<>(counts.keySet());
+    if (precedence == Precedence.FREQUENCY)
+      globals.sort(Comparator.comparing(counts::get, Comparator.reverseOrder()));
     var i = 2 + Tag.values().length;
     for (var a : globals) weights.put(a, i++);
   }
 
-  private static Map<Var, Integer> vars(Term a) {
-    var map = new HashMap<Var, Integer>();
-    a.walkLeaves(
-        b -> {
-          if (b instanceof Var b1) map.put(b1, map.getOrDefault(b1, 0) + 1);
-        });
-    return map;
+  // Weight of a ground term, cached on the term itself. The cache holds the order it was computed
+  // for, and is replaced in one write, so it stays consistent if several orders or threads use the
+  // same term
+  private static final class Weight {
+    final KnuthBendixOrder order;
+    final long value;
+
+    Weight(KnuthBendixOrder order, long value) {
+      this.order = order;
+      this.value = value;
+    }
   }
 
   private int symbolWeight(Term a) {
@@ -34,63 +49,28 @@ public final class KnuthBendixOrder {
     };
   }
 
-  private long totalWeight(Term a) {
+  private long groundWeight(Term a) {
+    assert a.isGround();
+    if (a.orderCache() instanceof Weight w && w.order == this) return w.value;
     long n = symbolWeight(a);
-    for (var b : a) n += totalWeight(b);
+    for (var b : a) n += groundWeight(b);
+    a.orderCache(new Weight(this, n));
     return n;
   }
 
-  // TODO: shortcut comparison of identical terms?
-  // TODO: pacman lemma?
-  public PartialOrder compare(Term a, Term b) {
-    // variables
-    var avars = vars(a);
-    var bvars = vars(b);
-    var maybeLess = true;
-    var maybeGreater = true;
-    for (var kv : avars.entrySet())
-      if (kv.getValue() > bvars.getOrDefault(kv.getKey(), 0)) {
-        maybeLess = false;
-        break;
-      }
-    for (var kv : bvars.entrySet())
-      if (kv.getValue() > avars.getOrDefault(kv.getKey(), 0)) {
-        maybeGreater = false;
-        break;
-      }
-    if (!maybeLess && !maybeGreater)
-      return a.equals(b) ? PartialOrder.EQUALS : PartialOrder.UNORDERED;
-
-    // total weight
-    var atotalWeight = totalWeight(a);
-    var btotalWeight = totalWeight(b);
-    if (atotalWeight < btotalWeight) return maybeLess ? PartialOrder.LESS : PartialOrder.UNORDERED;
-    if (atotalWeight > btotalWeight)
-      return maybeGreater ? PartialOrder.GREATER : PartialOrder.UNORDERED;
-
-    // different tags or functions mean different symbols
-    var asymbolWeight = symbolWeight(a);
-    var bsymbolWeight = symbolWeight(b);
-    if (asymbolWeight < bsymbolWeight)
-      return maybeLess ? PartialOrder.LESS : PartialOrder.UNORDERED;
-    if (asymbolWeight > bsymbolWeight)
-      return maybeGreater ? PartialOrder.GREATER : PartialOrder.UNORDERED;
-    assert asymbolWeight == 1 || a.tag() == b.tag();
+  // Symbols are ordered by weight, then, for symbols of the same weight, by value
+  private int precedence(Term a, Term b) {
+    var c = Integer.compare(symbolWeight(a), symbolWeight(b));
+    if (c != 0) return c;
+    assert symbolWeight(a) == 1 || a.tag() == b.tag();
     assert a.size() == b.size();
 
     // in some cases, the same tags can still mean different symbols, e.g. constants
     // with different values, or casts to different types
-    switch (a.tag()) {
-      case CAST -> {
-        var c = a.type().compareTo(b.type());
-        if (c != 0) return PartialOrder.of(c);
-      }
-      case INTEGER -> {
-        return PartialOrder.of(a.integerValue().compareTo(b.integerValue()));
-      }
-      case RATIONAL -> {
-        return PartialOrder.of(a.rationalValue().compareTo(b.rationalValue()));
-      }
+    return switch (a.tag()) {
+      case CAST -> a.type().compareTo(b.type());
+      case INTEGER -> a.integerValue().compareTo(b.integerValue());
+      case RATIONAL -> a.rationalValue().compareTo(b.rationalValue());
       case DISTINCT_OBJECT -> {
         // here, we rely on distinct objects being ordered by their names, in other words behaving
         // as though they had
@@ -101,16 +81,144 @@ public final class KnuthBendixOrder {
         // to be compared by reference for efficiency in other contexts. so assert that
         // the precondition holds here, i.e. different objects have different names
         assert !(a != b && a.toString().equals(b.toString()));
-        return PartialOrder.of(a.toString().compareTo(b.toString()));
+        yield a.toString().compareTo(b.toString());
+      }
+      default -> 0;
+    };
+  }
+
+  // Single pass comparison (Loechner, 'Things to Know when Implementing KBO', 2006). Both terms are
+  // walked together, keeping a running balance of weight, and of occurrences of each variable, on
+  // the left minus the right. Where the terms differ, the rest of each is only added to the
+  // balance, so every subterm is visited once. Holds the state of one comparison, so the order
+  // itself stays immutable
+  private final class Comparison {
+    long weight;
+
+    // Variable balances, in an open addressing table, and how many are positive and negative
+    Var[] vars;
+    int[] balances;
+    int size;
+    int positive, negative;
+
+    void add(Var x, int d) {
+      weight += d;
+      if (vars == null) {
+        vars = new Var[16];
+        balances = new int[16];
+      }
+      var i = slot(vars, x);
+      if (vars[i] == null) {
+        if (size * 2 >= vars.length) {
+          var vars0 = vars;
+          var balances0 = balances;
+          vars = new Var[vars0.length * 2];
+          balances = new int[vars.length];
+          for (var j = 0; j < vars0.length; j++)
+            if (vars0[j] != null) {
+              var k = slot(vars, vars0[j]);
+              vars[k] = vars0[j];
+              balances[k] = balances0[j];
+            }
+          i = slot(vars, x);
+        }
+        vars[i] = x;
+        size++;
+      }
+
+      var old = balances[i];
+      var balance = old + d;
+      balances[i] = balance;
+      if (old > 0) positive--;
+      else if (old < 0) negative--;
+      if (balance > 0) positive++;
+      else if (balance < 0) negative++;
+    }
+
+    // Add the weight and variables of a to the balance, on the left if d is 1, or right if -1
+    void walk(Term a, int d) {
+      if (a.isGround()) {
+        weight += d * groundWeight(a);
+        return;
+      }
+      if (a instanceof Var x) {
+        add(x, d);
+        return;
       }
+      weight += d * symbolWeight(a);
+      for (var b : a) walk(b, d);
+    }
+
+    PartialOrder greater() {
+      return negative == 0 ? PartialOrder.GREATER : PartialOrder.UNORDERED;
+    }
+
+    PartialOrder less() {
+      return positive == 0 ? PartialOrder.LESS : PartialOrder.UNORDERED;
     }
 
-    // recur
-    var n = a.size();
-    var i = 0;
-    while (i < n && a.get(i).equals(b.get(i))) i++;
-    if (i == n) return PartialOrder.EQUALS;
-    return compare(a.get(i), b.get(i));
+    PartialOrder compare(Term a, Term b) {
+      if (a == b) return PartialOrder.EQUALS;
+
+      // variables
+      if (a instanceof Var x) {
+        add(x, 1);
+        walk(b, -1);
+        return b.contains(x) ? PartialOrder.LESS : PartialOrder.UNORDERED;
+      }
+      if (b instanceof Var y) {
+        walk(a, 1);
+        add(y, -1);
+        return a.contains(y) ? PartialOrder.GREATER : PartialOrder.UNORDERED;
+      }
+
+      // same symbol means compare arguments lexicographically; after the first difference, the
+      // remaining arguments only count towards the balance
+      var c = precedence(a, b);
+      var lex = PartialOrder.UNORDERED;
+      if (c == 0) {
+        lex = PartialOrder.EQUALS;
+        var n = a.size();
+        for (var i = 0; i < n; i++)
+          if (lex == PartialOrder.EQUALS) lex = compare(a.get(i), b.get(i));
+          else {
+            walk(a.get(i), 1);
+            walk(b.get(i), -1);
+          }
+      } else {
+        walk(a, 1);
+        walk(b, -1);
+      }
+
+      // total weight
+      if (weight > 0) return greater();
+      if (weight < 0) return less();
+
+      // precedence
+      if (c > 0) return greater();
+      if (c < 0) return less();
+
+      // arguments
+      return switch (lex) {
+        case GREATER -> greater();
+        case LESS -> less();
+        default -> lex;
+      };
+    }
+  }
+
+  private static int slot(Var[] vars, Var x) {
+    var mask = vars.length - 1;
+    var i = (x.id * 0x9e3779b9) & mask;
+    while (vars[i] != null && vars[i] != x) i = (i + 1) & mask;
+    return i;
+  }
+
+  // TODO: pacman lemma?
+  public PartialOrder compare(Term a, Term b) {
+    // Terms are interned, so equal terms are identical
+    if (a == b) return PartialOrder.EQUALS;
+    return new Comparison().compare(a, b);
   }
 
   public PartialOrder compare(boolean apol, Equation a, boolean bpol, Equation b) {
@@ -0,0 +1,77 @@
+package olivine;
+
+// Ways to choose a negative literal of a clause to be the only one that takes part in inferences.
+// Superposition remains complete whichever negative literal is selected, and a clause with a
+// selected literal is not used to rewrite with or factored, so selection can cut the number of
+// inferences a long way. A clause with no negative literals has nothing selected, and its maximal
+// literals take part as usual
+public enum LiteralSelection {
+  // Maximal literals only
+  NONE {
+    @Override
+    int select(Clause c, KnuthBendixOrder order) {
+      return -1;
+    }
+  },
+
+  // A negative literal that no other negative literal is greater than
+  MAX_NEGATIVE {
+    @Override
+    int select(Clause c, KnuthBendixOrder order) {
+      for (var i = 0; i < c.negativeSize; i++) {
+        var e = new Equation(c.literals[i]);
+        var maximal = true;
+        for (var j = 0; j < c.negativeSize; j++)
+          if (j != i
+              && order.compare(false, e, false, new Equation(c.literals[j])) == PartialOrder.LESS) {
+            maximal = false;
+            break;
+          }
+        if (maximal) return i;
+      }
+      return -1;
+    }
+  },
+
+  // The negative literal with fewest symbols
+  SMALLEST_NEGATIVE {
+    @Override
+    int select(Clause c, KnuthBendixOrder order) {
+      var best = -1;
+      for (var i = 0; i < c.negativeSize; i++)
+        if (best < 0 || c.literals[i].symbolCount() < c.literals[best].symbolCount()) best = i;
+      return best;
+    }
+  },
+
+  // After E's SelectMaxLComplex: prefer ground literals, then the literal with most symbols, then
+  // the one whose sides differ most in size, which tends to select literals that will be hard to
+  // satisfy, so fewer inferences go through them
+  MAX_L_COMPLEX {
+    @Override
+    int select(Clause c, KnuthBendixOrder order) {
+      var best = -1;
+      for (var i = 0; i < c.negativeSize; i++)
+        if (best < 0 || better(c.literals[i], c.literals[best])) best = i;
+      return best;
+    }
+  };
+
+  private static long difference(Term a) {
+    var e = new Equation(a);
+    return Math.abs(e.left.symbolCount() - e.right.symbolCount());
+  }
+
+  private static boolean better(Term a, Term b) {
+    if (a.isGround() != b.isGround()) return a.isGround();
+    if (a.symbolCount() != b.symbolCount()) return a.symbolCount() > b.symbolCount();
+    return difference(a) > difference(b);
+  }
+
+  // The index of the selected literal, or -1 for none
+  abstract int select(Clause c, KnuthBendixOrder order);
+
+  public static LiteralSelection of(String s) {
+    return valueOf(s.toUpperCase().replace('-', '_'));
+  }
+}
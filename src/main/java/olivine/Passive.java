@@ -0,0 +1,457 @@
+package olivine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Supplier;
+
+// Clauses waiting to be selected as the given clause. Each clause is held in several queues that
+// order it differently: by age, which makes sure every clause is eventually selected; by weight,
+// which prefers small clauses, since they are more likely to be useful; and, for clauses derived
+// from the negated conjecture, by weight again, which keeps the search focused on the goal.
+// Selection takes turns between the queues according to a pick ratio. A clause selected through
+// one queue is only marked as such in the others, and skipped when it comes up there.
+//
+// Most passive clauses are never selected, so they are not kept as terms, which take many objects
+// each, but encoded as ints, packed into large slabs as variable-length ints (most of the numbers
+// are small), and only decoded when selected. So that a long run does not exhaust memory even so,
+// when there are too many clauses, the heavier half are written to a file. They are brought back
+// when the clauses in memory run out, and on the age queue's turn, when a spilled clause is older
+// than any in memory, so every clause is still eventually selected. Nothing is discarded, so
+// running out of clauses still means the problem is satisfiable.
+//
+// A clause can also be added as a recipe to make it, with an estimate of its weight, if making it
+// is more expensive than keeping the recipe. The recipe may decline to make the clause, if by the
+// time it is selected, the clause is no longer needed
+public final class Passive implements AutoCloseable {
+  // A slab is freed when all the clauses in it have been selected or spilled
+  private static final int SLAB_SIZE = 1 << 22;
+
+  private static final class Slab {
+    byte[] data;
+    int used;
+    int live;
+
+    Slab(int n) {
+      data = new byte[n];
+    }
+  }
+
+  private static final class Entry {
+    final Slab slab;
+    final int offset;
+    final int length;
+    final Supplier<Clause> recipe;
+    final int weight;
+    final boolean goal;
+    final long serial;
+    boolean selected;
+
+    Entry(
+        Slab slab,
+        int offset,
+        int length,
+        Supplier<Clause> recipe,
+        int weight,
+        boolean goal,
+        long serial) {
+      this.slab = slab;
+      this.offset = offset;
+      this.length = length;
+      this.recipe = recipe;
+      this.weight = weight;
+      this.goal = goal;
+      this.serial = serial;
+    }
+  }
+
+  // Rough size of an entry, with its references from the queues
+  private static final int ENTRY_BYTES = 56;
+
+  // Ties between clauses of equal weight are broken by age, since the buckets are FIFO
+  private final ArrayDeque<Entry> age = new ArrayDeque<>();
+  private final BucketQueue<Entry> weight = new BucketQueue<>(x -> x.weight);
+  private final BucketQueue<Entry> goal = new BucketQueue<>(x -> x.weight);
+  private final int ageRatio, weightRatio, goalRatio;
+  private long serial;
+  private long picks;
+  private int size;
+
+  // Clauses in memory
+  private final ClauseCodec codec = new ClauseCodec();
+  private Slab slab = new Slab(SLAB_SIZE);
+  private long slabBytes = SLAB_SIZE;
+  private int[] unpacked = new int[64];
+
+  // Clauses beyond the limit are spilled to disk
+  private final int limit;
+  private final List<Run> runs = new ArrayList<>();
+  private long spilled;
+
+  // An interrupt, from a deadline or another strategy finishing first, closes a file being read or
+  // written, which means the search is to stop, not that something went wrong
+  private static RuntimeException error(IOException e) {
+    if (e instanceof ClosedByInterruptException || Thread.currentThread().isInterrupted())
+      return new Fail();
+    return new UncheckedIOException(e);
+  }
+
+  // A file of clauses, sorted by weight. Each is written as its weight and goal flag, the length
+  // of its packed form, then the packed form as it was in the slab
+  private static final class Run {
+    final Path path;
+    DataOutputStream out;
+    DataInputStream in;
+    long size;
+
+    // The oldest clause written
+    long serial = Long.MAX_VALUE;
+
+    // The next clause to be read
+    int headWeight;
+    boolean headGoal;
+    byte[] head;
+
+    Run() {
+      try {
+        path = Files.createTempFile("olivine", ".run");
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+      } catch (IOException e) {
+        throw error(e);
+      }
+    }
+
+    private void writeInt(int x) throws IOException {
+      while ((x & ~0x7f) != 0) {
+        out.writeByte(x & 0x7f | 0x80);
+        x >>>= 7;
+      }
+      out.writeByte(x);
+    }
+
+    private int readInt() throws IOException {
+      var x = 0;
+      for (var shift = 0; ; shift += 7) {
+        var b = in.readByte();
+        x |= (b & 0x7f) << shift;
+        if (b >= 0) return x;
+      }
+    }
+
+    void write(Entry entry) {
+      try {
+        writeInt(entry.weight << 1 | (entry.goal ? 1 : 0));
+        writeInt(entry.length);
+        out.write(entry.slab.data, entry.offset, entry.length);
+      } catch (IOException e) {
+        throw error(e);
+      }
+      size++;
+      serial = Math.min(serial, entry.serial);
+    }
+
+    // Switch from writing to reading
+    void finish() {
+      try {
+        out.close();
+        out = null;
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+      } catch (IOException e) {
+        throw error(e);
+      }
+      next();
+    }
+
+    // Read the next clause into the head, or return false if there are no more
+    boolean next() {
+      if (size == 0) {
+        head = null;
+        return false;
+      }
+      try {
+        var x = readInt();
+        headWeight = x >>> 1;
+        headGoal = (x & 1) != 0;
+        head = new byte[readInt()];
+        in.readFully(head);
+      } catch (IOException e) {
+        throw error(e);
+      }
+      size--;
+      return true;
+    }
+
+    void close() {
+      try {
+        if (out != null) out.close();
+        if (in != null) in.close();
+        Files.deleteIfExists(path);
+      } catch (IOException e) {
+        throw error(e);
+      }
+    }
+  }
+
+  public Passive(int ageRatio, int weightRatio, int goalRatio) {
+    this(ageRatio, weightRatio, goalRatio, Integer.MAX_VALUE);
+  }
+
+  public Passive(int ageRatio, int weightRatio, int goalRatio, int limit) {
+    assert ageRatio >= 0 && weightRatio >= 0 && goalRatio >= 0;
+    assert limit >= 2;
+    if (ageRatio + weightRatio + goalRatio == 0) weightRatio = 1;
+    this.ageRatio = ageRatio;
+    this.weightRatio = weightRatio;
+    this.goalRatio = goalRatio;
+    this.limit = limit;
+  }
+
+  public long size() {
+    return size + spilled;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  // Estimated bytes taken by clauses in memory
+  public long memory() {
+    return slabBytes + (long) ENTRY_BYTES * size;
+  }
+
+  // Make room in the current slab for n more bytes
+  private void reserve(int n) {
+    if (slab.used + n <= slab.data.length) return;
+    if (slab.live == 0) {
+      slabBytes -= slab.data.length;
+      slab.data = null;
+    }
+    slab = new Slab(Math.max(n, SLAB_SIZE));
+    slabBytes += slab.data.length;
+    Stats.max("peak passive bytes", memory());
+  }
+
+  private void add(Entry entry) {
+    age.add(entry);
+    weight.add(entry);
+    if (entry.goal) goal.add(entry);
+    if (++size > limit) spill();
+  }
+
+  public void add(Clause c) {
+    var entry = pack(c, c.weight);
+    Stats.inc("passive clauses");
+    Stats.inc("passive clause bytes", entry.length);
+    add(entry);
+  }
+
+  // Encode a clause into the current slab
+  private Entry pack(Clause c, int w) {
+    var v = codec.encode(c);
+
+    // Pack, allowing for the longest possible form of each int
+    reserve(v.length * 5);
+    var data = slab.data;
+    var offset = slab.used;
+    var i = offset;
+    for (var x : v) {
+      while ((x & ~0x7f) != 0) {
+        data[i++] = (byte) (x & 0x7f | 0x80);
+        x >>>= 7;
+      }
+      data[i++] = (byte) x;
+    }
+    var length = i - offset;
+    slab.used = i;
+    slab.live++;
+    return new Entry(slab, offset, length, null, w, c.goal, serial++);
+  }
+
+  // The recipe returns null if the clause turns out not to be needed
+  public void add(int weight, boolean goal, Supplier<Clause> recipe) {
+    add(new Entry(null, 0, 0, recipe, weight, goal, serial++));
+  }
+
+  private Clause decode(Entry entry) {
+    var data = entry.slab.data;
+    var i = entry.offset;
+    var end = i + entry.length;
+    for (var j = 0; i < end; j++) {
+      var x = 0;
+      for (var shift = 0; ; shift += 7) {
+        var b = data[i++];
+        x |= (b & 0x7f) << shift;
+        if (b >= 0) break;
+      }
+
+      // The first int is the length of the encoding
+      if (j == 0 && unpacked.length < x) unpacked = new int[x];
+      unpacked[j] = x;
+    }
+    return codec.decode(unpacked, 0);
+  }
+
+  // The clause has been selected or spilled, so its slab may no longer be needed
+  private void release(Entry entry) {
+    var s = entry.slab;
+    if (s == null) return;
+    if (--s.live == 0 && s != slab) {
+      slabBytes -= s.data.length;
+      s.data = null;
+    }
+  }
+
+  private static Entry poll(Queue<Entry> q) {
+    for (; ; ) {
+      var entry = q.poll();
+      if (entry == null || !entry.selected) return entry;
+    }
+  }
+
+  private static Entry peek(Queue<Entry> q) {
+    for (; ; ) {
+      var entry = q.peek();
+      if (entry == null || !entry.selected) return entry;
+      q.poll();
+    }
+  }
+
+  // A run holding a clause older than any in memory, or null if there is none
+  private Run older() {
+    var head = peek(age);
+    var serial = head == null ? Long.MAX_VALUE : head.serial;
+    Run older = null;
+    for (var run : runs)
+      if (run.serial < serial) {
+        older = run;
+        serial = run.serial;
+      }
+    return older;
+  }
+
+  public Clause poll() {
+    for (; ; ) {
+      if (size == 0) {
+        if (spilled == 0) return null;
+        unspill();
+      }
+
+      // Whose turn is it?
+      var i = picks++ % (ageRatio + weightRatio + goalRatio);
+      Entry entry = null;
+      if (i < ageRatio) {
+        // The run does not keep its clauses in order of age, so the one that comes back is the
+        // lightest. The run stays older until it is used up, so each of its clauses gets its turn
+        var run = older();
+        if (run != null) {
+          Stats.inc("unspilled by age");
+          entry = read(run);
+          var c = decode(entry);
+          release(entry);
+          return c;
+        }
+        entry = poll(age);
+      } else if (i >= ageRatio + weightRatio) entry = poll(goal);
+
+      // The weight queue has every clause, so it can stand in when the chosen queue has none left
+      if (entry == null) entry = poll(weight);
+      entry.selected = true;
+      size--;
+      if (entry.recipe != null) {
+        var c = entry.recipe.get();
+        if (c != null) return c;
+        Stats.inc("declined recipes");
+        continue;
+      }
+      var c = decode(entry);
+      release(entry);
+      return c;
+    }
+  }
+
+  // Keep the lightest half of the clauses in memory, and write the rest to a run file, in the
+  // order they would be selected by weight
+  private void spill() {
+    var keep = new ArrayList<Entry>(size / 2);
+    while (keep.size() < size / 2) keep.add(poll(weight));
+    // Listed at once, so it is deleted on close even if writing is interrupted
+    var run = new Run();
+    runs.add(run);
+    for (; ; ) {
+      var entry = poll(weight);
+      if (entry == null) break;
+
+      // A recipe cannot be written out, so the clause has to be made now
+      if (entry.recipe != null) {
+        var c = entry.recipe.get();
+        if (c == null) continue;
+        entry = pack(c, entry.weight);
+      }
+      run.write(entry);
+      release(entry);
+    }
+    Stats.inc("spilled clauses", run.size);
+    spilled += run.size;
+    run.finish();
+    if (run.head == null) {
+      run.close();
+      runs.remove(run);
+    }
+
+    age.clear();
+    weight.clear();
+    goal.clear();
+    keep.sort(Comparator.comparingLong(x -> x.serial));
+    for (var entry : keep) {
+      age.add(entry);
+      weight.add(entry);
+      if (entry.goal) goal.add(entry);
+    }
+    size = keep.size();
+  }
+
+  // Bring the next clause of a run back into memory
+  private Entry read(Run run) {
+    var head = run.head;
+    reserve(head.length);
+    System.arraycopy(head, 0, slab.data, slab.used, head.length);
+    var entry =
+        new Entry(slab, slab.used, head.length, null, run.headWeight, run.headGoal, serial++);
+    slab.used += head.length;
+    slab.live++;
+    spilled--;
+    if (!run.next()) {
+      run.close();
+      runs.remove(run);
+    }
+    return entry;
+  }
+
+  // When the clauses in memory run out, bring back the lightest spilled clauses, merging runs
+  private void unspill() {
+    while (size < limit / 2 && spilled > 0) {
+      Run best = null;
+      for (var run : runs) if (best == null || run.headWeight < best.headWeight) best = run;
+      add(read(best));
+    }
+  }
+
+  // Deletes any run files
+  @Override
+  public void close() {
+    for (var run : runs) run.close();
+    runs.clear();
+    spilled = 0;
+  }
+}
@@ -0,0 +1,139 @@
+package olivine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Several superposition strategies run at the same time on the same clauses. The first to give a
+// definite answer wins and the others are interrupted, which they notice at the start of their next
+// iteration. A strategy that gives up does not stop the others; the portfolio gives up only when
+// all of them have
+public final class Portfolio {
+  private static final class Entry {
+    final String name;
+    final Strategy strategy;
+    final long steps;
+
+    Entry(String name, Strategy strategy, long steps) {
+      this.name = name;
+      this.strategy = strategy;
+      this.steps = steps;
+    }
+  }
+
+  private final List<Entry> entries = new ArrayList<>();
+
+  // Name of the strategy that gave the last answer
+  String winner;
+
+  // Adds a strategy that gives up after the given number of steps
+  public void add(String name, Strategy strategy, long steps) {
+    entries.add(new Entry(name, strategy, steps));
+  }
+
+  public void add(String name, Strategy strategy) {
+    add(name, strategy, Long.MAX_VALUE);
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  // A search sets fields of the clauses it is given, such as their birth, so each strategy gets
+  // copies of its own. The terms are immutable, and shared
+  public boolean sat(List<Clause> clauses, long steps) {
+    if (entries.isEmpty()) throw new IllegalStateException("empty portfolio");
+    var executor = Executors.newFixedThreadPool(entries.size());
+    try {
+      var service = new ExecutorCompletionService<Boolean>(executor);
+      var running = new HashMap<Future<Boolean>, Entry>();
+      for (var entry : entries) {
+        var copies = new ArrayList<Clause>(clauses.size());
+        for (var c : clauses) copies.add(c.copy());
+        running.put(
+            service.submit(
+                () -> Superposition.sat(copies, entry.strategy, Math.min(entry.steps, steps))),
+            entry);
+      }
+      for (var i = 0; i < entries.size(); i++) {
+        var future = service.take();
+        try {
+          var sat = future.get();
+          var entry = running.get(future);
+          winner = entry.name;
+          Stats.inc("portfolio wins/" + entry.name);
+          return sat;
+        } catch (ExecutionException e) {
+          var cause = e.getCause();
+          if (cause instanceof Fail) continue;
+          if (cause instanceof RuntimeException e1) throw e1;
+          if (cause instanceof Error e1) throw e1;
+          throw new IllegalStateException(cause);
+        }
+      }
+      throw new Fail();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new Fail();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // Named sets of strategies, each built on a base that supplies the settings they do not vary,
+  // such as threads per strategy and the passive limit
+  public static Portfolio of(String name, Strategy base) {
+    var portfolio = new Portfolio();
+    switch (name) {
+      case "small" -> {
+        portfolio.add("default", base.copy());
+
+        var s = base.copy();
+        s.precedence = Precedence.FREQUENCY;
+        s.selection = LiteralSelection.MAX_L_COMPLEX;
+        portfolio.add("frequency-max-l-complex", s);
+      }
+      case "wide" -> {
+        portfolio.add("default", base.copy());
+
+        var s = base.copy();
+        s.precedence = Precedence.FREQUENCY;
+        s.selection = LiteralSelection.MAX_L_COMPLEX;
+        portfolio.add("frequency-max-l-complex", s);
+
+        // Mostly by age, which finds proofs that need heavy clauses
+        s = base.copy();
+        s.ageRatio = 2;
+        s.weightRatio = 1;
+        s.goalRatio = 0;
+        s.selection = LiteralSelection.MAX_NEGATIVE;
+        portfolio.add("age-max-negative", s);
+
+        // Mostly clauses from the conjecture
+        s = base.copy();
+        s.ageRatio = 1;
+        s.weightRatio = 2;
+        s.goalRatio = 4;
+        s.selection = LiteralSelection.SMALLEST_NEGATIVE;
+        portfolio.add("goal-smallest-negative", s);
+
+        // Splitting pays off on problems with many clauses of independent parts
+        s = base.copy();
+        s.avatar = true;
+        portfolio.add("avatar", s);
+
+        // Lazy inference gets far quickly on some problems and bogs down on others, so it gets
+        // only a limited run, after which its processor time goes to the others
+        s = base.copy();
+        s.lazy = true;
+        portfolio.add("lazy", s, 100000);
+      }
+      default -> throw new IllegalArgumentException(name + ": unknown portfolio");
+    }
+    return portfolio;
+  }
+}
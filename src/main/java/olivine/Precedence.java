@@ -0,0 +1,17 @@
+package olivine;
+
+// How the Knuth-Bendix order ranks symbols. Each symbol gets its own weight, and symbols of greater
+// weight are also greater in precedence
+public enum Precedence {
+  // Symbols that occur first in the input are least
+  OCCURRENCE,
+
+  // After E's invfreq: symbols that occur most often in the input are least, so terms made of rare
+  // symbols are greater and tend to be rewritten into terms made of common ones. Ties are broken by
+  // first occurrence
+  FREQUENCY;
+
+  public static Precedence of(String s) {
+    return valueOf(s.toUpperCase().replace('-', '_'));
+  }
+}
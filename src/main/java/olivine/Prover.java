@@ -4,16 +4,34 @@ import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 
 final class Prover {
-  private enum Language {
+  enum Language {
+    CLAUSES,
     DIMACS,
     TPTP,
   }
 
   private static Language specified;
+  static final Strategy strategy = new Strategy();
+
+  // Named set of strategies to run at the same time, each varying the one given by other options
+  private static String portfolio;
+
+  // Serve requests instead of solving one problem
+  private static boolean daemon;
+  private static Path socket;
+  private static int workers = Runtime.getRuntime().availableProcessors();
+
+  // Where to keep parsed include files between runs
+  private static Path includeCache;
+
+  // Save the problem as clauses instead of solving it
+  private static String saveCnf;
 
   private static final Option[] OPTIONS =
       new Option[] {
@@ -42,6 +60,110 @@ final class Prover {
             specified = Language.DIMACS;
           }
         },
+        new Option('\0', "clauses", null, "input language binary clauses, saved by --save-cnf") {
+          @Override
+          public void accept(String arg) {
+            specified = Language.CLAUSES;
+          }
+        },
+        new Option('\0', "save-cnf", "file", "save the problem as binary clauses, and exit") {
+          @Override
+          public void accept(String arg) {
+            saveCnf = arg;
+          }
+        },
+        new Option('j', "threads", "count", "threads generating inferences, 0 for all cores") {
+          @Override
+          public void accept(String arg) {
+            strategy.set("threads", arg);
+          }
+        },
+        new Option(
+            '\0', "pick-ratio", "age:weight[:goal]", "how often to pick each kind of clause") {
+          @Override
+          public void accept(String arg) {
+            strategy.set("pick-ratio", arg);
+          }
+        },
+        new Option('\0', "passive-limit", "count", "passive clauses to keep in memory") {
+          @Override
+          public void accept(String arg) {
+            strategy.set("passive-limit", arg);
+          }
+        },
+        new Option('\0', "lazy", null, "make superposition clauses only when selected") {
+          @Override
+          public void accept(String arg) {
+            strategy.set("lazy", null);
+          }
+        },
+        new Option('\0', "avatar", null, "split clauses into parts chosen by a SAT solver") {
+          @Override
+          public void accept(String arg) {
+            strategy.set("avatar", null);
+          }
+        },
+        new Option(
+            '\0',
+            "selection",
+            "function",
+            "literal selection: none, max-negative, smallest-negative, max-l-complex") {
+          @Override
+          public void accept(String arg) {
+            strategy.set("selection", arg);
+          }
+        },
+        new Option('\0', "precedence", "order", "symbol precedence: occurrence, frequency") {
+          @Override
+          public void accept(String arg) {
+            strategy.set("precedence", arg);
+          }
+        },
+        new Option(
+            '\0',
+            "sat-effort",
+            "subsume:eliminate:probe",
+            "steps for each stage of SAT preprocessing, 0 to skip it") {
+          @Override
+          public void accept(String arg) {
+            strategy.set("sat-effort", arg);
+          }
+        },
+        new Option('\0', "portfolio", "name", "run several strategies at once: small, wide") {
+          @Override
+          public void accept(String arg) {
+            // Check the name now rather than after reading the input; the strategies are made
+            // later, once the options they build on are all known
+            Portfolio.of(arg, strategy);
+            portfolio = arg;
+          }
+        },
+        new Option('\0', "daemon", null, "solve problems sent as JSON lines on stdin") {
+          @Override
+          public void accept(String arg) {
+            daemon = true;
+          }
+        },
+        new Option('\0', "socket", "path", "serve on a Unix domain socket instead of stdin") {
+          @Override
+          public void accept(String arg) {
+            daemon = true;
+            socket = Path.of(arg);
+          }
+        },
+        new Option('\0', "workers", "count", "problems the daemon solves at once") {
+          @Override
+          public void accept(String arg) {
+            workers = Integer.parseInt(arg);
+            if (workers < 1) throw new IllegalArgumentException(arg + ": too few workers");
+          }
+        },
+        new Option('\0', "include-cache", "dir", "keep parsed include files in a directory") {
+          @Override
+          public void accept(String arg) {
+            includeCache = Path.of(arg);
+          }
+        },
         new Option('t', "cpu-limit", "seconds", "time limit") {
           @Override
           public void accept(String arg) {
@@ -61,37 +183,85 @@ final class Prover {
 
   private Prover() {}
 
-  private static Language language(String file) {
+  static Language language(Language specified, String file) {
     if (specified != null) return specified;
     return switch (Etc.extension(file)) {
+      case "clauses" -> Language.CLAUSES;
       case "cnf" -> Language.DIMACS;
       case "ax", "p" -> Language.TPTP;
       default -> throw new IllegalArgumentException(file + ": language not specified");
     };
   }
 
-  private static boolean solve(String file, long steps, InputStream stream) throws IOException {
+  static List<Clause> clauses(Language language, String file, InputStream stream)
+      throws IOException {
     var cnf = new CNF();
-    switch (language(file)) {
+    switch (language) {
+      case CLAUSES -> ClauseFile.load(file, stream, cnf);
       case DIMACS -> DimacsParser.parse(file, stream, cnf);
       case TPTP -> TptpParser.parse(file, stream, cnf);
     }
-    var clauses = cnf.clauses;
-    return Clause.propositional(clauses)
-        ? Dpll.sat(clauses, steps)
-        : Superposition.sat(clauses, steps);
+    return cnf.clauses;
+  }
+
+  // The portfolio, if not null, names a set of strategies built on the given one
+  static boolean solve(
+      Language language,
+      String file,
+      InputStream stream,
+      Strategy strategy,
+      String portfolio,
+      long steps)
+      throws IOException {
+    // DIMACS goes straight to the SAT solver, without terms
+    if (language == Language.DIMACS) {
+      var problem = DimacsParser.read(file, stream);
+      Stats.inc("input clauses", problem.clauses);
+      return SatPreprocessor.sat(problem, strategy, steps);
+    }
+    var clauses = clauses(language, file, stream);
+    Stats.inc("input clauses", clauses.size());
+    if (Clause.propositional(clauses))
+      return SatPreprocessor.sat(DimacsParser.Problem.of(clauses), strategy, steps);
+    if (portfolio != null) return Portfolio.of(portfolio, strategy).sat(clauses, steps);
+    return Superposition.sat(clauses, strategy, steps);
   }
 
   static boolean solve(String file, long steps) throws IOException {
-    if (file == null) return solve("stdin", steps, System.in);
+    if (file == null)
+      return solve(language(specified, "stdin"), "stdin", System.in, strategy, portfolio, steps);
     try (var stream = new BufferedInputStream(new FileInputStream(file))) {
-      return solve(file, steps, stream);
+      return solve(language(specified, file), file, stream, strategy, portfolio, steps);
     }
   }
 
+  private static void save(String file) throws IOException {
+    List<Clause> clauses;
+    if (file == null) clauses = clauses(language(specified, "stdin"), "stdin", System.in);
+    else
+      try (var stream = new BufferedInputStream(new FileInputStream(file))) {
+        clauses = clauses(language(specified, file), file, stream);
+      }
+    ClauseFile.save(clauses, saveCnf);
+  }
+
   public static void main(String[] args) throws IOException {
     try {
       Option.parse(OPTIONS, args);
+
+      // The daemon keeps included files in memory for the problems that follow
+      if (daemon || includeCache != null) TptpParser.includeCache = new IncludeCache(includeCache);
+      if (daemon) {
+        if (Option.positionalArgs.size() > 0) {
+          System.err.printf(
+              "%s: daemon reads problems from requests\n", Option.positionalArgs.get(0));
+          System.exit(1);
+        }
+        var d = new Daemon(workers, strategy, portfolio);
+        if (socket == null) d.serve();
+        else d.serve(socket);
+        System.exit(0);
+      }
       if (Option.positionalArgs.isEmpty() && specified != null) Option.readStdin = true;
 
       String file = null;
@@ -112,6 +282,10 @@ final class Prover {
         file = Option.positionalArgs.get(0);
       }
 
+      if (saveCnf != null) {
+        save(file);
+        System.exit(0);
+      }
       System.out.println(solve(file, Long.MAX_VALUE) ? "sat" : "unsat");
     } catch (Fail ignored) {
       System.exit(0);
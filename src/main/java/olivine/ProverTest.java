@@ -5,6 +5,8 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 final class ProverTest {
@@ -19,6 +21,14 @@ final class ProverTest {
   private static Random random = new Random();
   private static int maxAttempted = -1;
   private static long steps = 100;
+  private static int jobs = 1;
+  private static double timeout;
+  private static String csv;
+  private static String json;
+  private static Path includeCache;
+
+  // Columns of the CSV output, after the file, expected status and result
+  private static final String[] STATS = {"input clauses", "given clauses", "passive clauses"};
 
   private static final Option[] OPTIONS =
       new Option[] {
@@ -59,6 +69,37 @@ final class ProverTest {
             shuffle = true;
           }
         },
+        new Option('j', "jobs", "N", "problems to solve at once, 0 for all cores") {
+          @Override
+          public void accept(String arg) {
+            jobs = Integer.parseInt(arg);
+            if (jobs <= 0) jobs = Runtime.getRuntime().availableProcessors();
+          }
+        },
+        new Option('t', "timeout", "seconds", "time limit per problem") {
+          @Override
+          public void accept(String arg) {
+            timeout = Double.parseDouble(arg);
+          }
+        },
+        new Option('\0', "csv", "file", "write a CSV record per problem") {
+          @Override
+          public void accept(String arg) {
+            csv = arg;
+          }
+        },
+        new Option('\0', "json", "file", "write a JSON line per problem") {
+          @Override
+          public void accept(String arg) {
+            json = arg;
+          }
+        },
+        new Option('\0', "include-cache", "dir", "also keep parsed include files in a directory") {
+          @Override
+          public void accept(String arg) {
+            includeCache = Path.of(arg);
+          }
+        },
       };
 
   private ProverTest() {}
@@ -94,7 +135,8 @@ final class ProverTest {
     return (System.currentTimeMillis() - start) * 0.001;
   }
 
-  public static void main(String[] args) throws IOException {
+  public static void main(String[] args)
+      throws ExecutionException, IOException, InterruptedException {
     Option.parse(OPTIONS, args);
     List<String> files = new ArrayList<>();
     for (var s : Option.positionalArgs) {
@@ -141,34 +183,109 @@ final class ProverTest {
     if (shuffle) Collections.shuffle(files, random);
     if (maxAttempted >= 0 && files.size() > maxAttempted) files = files.subList(0, maxAttempted);
 
-    var solved = 0;
+    // Problems are solved in the daemon's worker pool, which gives each its own deadline and
+    // statistics, and reports any error as the result of that problem rather than ending the run.
+    // Results are reported in the order of the list. Problems that include the same axioms share
+    // them through the include cache
+    TptpParser.includeCache = new IncludeCache(includeCache);
     var start = System.currentTimeMillis();
+    var daemon = new Daemon(jobs, new Strategy(), null);
+    var answers = new ArrayList<Future<Map<String, Object>>>();
     for (var file : files) {
-      var status = status(file);
-      System.out.printf("%s\t%s\t", file, status);
-      var start1 = System.currentTimeMillis();
-      try {
-        var sat = Prover.solve(file, steps);
-        System.out.printf("%s\t%.3f\n", sat ? "sat" : "uns", time(start1));
-        if (status != null)
-          switch (status) {
-            case "UNSAT", "ContradictoryAxioms", "Unsatisfiable", "Theorem" -> {
-              if (sat) throw new IllegalStateException(status);
-            }
-            case "SAT", "Satisfiable", "CounterSatisfiable" -> {
-              if (!sat) throw new IllegalStateException(status);
-            }
-            default -> throw new IllegalStateException(status);
-          }
-        solved++;
-      } catch (Inappropriate e) {
-        System.out.println("iap");
-      } catch (Fail e) {
-        System.out.printf("-\t%.3f\n", time(start1));
+      var request = new HashMap<String, Object>();
+      request.put("file", file);
+      request.put("steps", steps);
+      if (timeout > 0) request.put("timeout", timeout);
+      answers.add(daemon.submit(request));
+    }
+
+    var csvWriter = csv == null ? null : new PrintWriter(csv, StandardCharsets.UTF_8);
+    var jsonWriter = json == null ? null : new PrintWriter(json, StandardCharsets.UTF_8);
+    if (csvWriter != null) {
+      csvWriter.print("file,expected,result,time");
+      for (var key : STATS) csvWriter.print(',' + key.replace(' ', '_'));
+      csvWriter.println();
+    }
+    var solved = 0;
+    var errors = 0;
+    try {
+      for (var i = 0; i < files.size(); i++) {
+        var file = files.get(i);
+        var status = status(file);
+        var answer = answers.get(i).get();
+        var result = (String) answer.get("result");
+        var time = (double) answer.get("time");
+        var stats = (Map<?, ?>) answer.get("stats");
+
+        // Totals over all the problems
+        for (var kv : stats.entrySet()) Stats.inc((String) kv.getKey(), (Long) kv.getValue());
+        System.out.printf(
+            "%s\t%s\t%s\t%.3f\n",
+            file,
+            status,
+            switch (result) {
+              case "sat" -> "sat";
+              case "unsat" -> "uns";
+              case "inappropriate" -> "iap";
+              case "error" -> "err";
+              default -> "-";
+            },
+            time);
+
+        if (csvWriter != null) {
+          csvWriter.printf("%s,%s,%s,%.3f", csv(file), status == null ? "" : status, result, time);
+          for (var key : STATS) {
+            var n = stats.get(key);
+            csvWriter.print("," + (n == null ? 0 : n));
+          }
+          csvWriter.println();
+          csvWriter.flush();
+        }
+        if (jsonWriter != null) {
+          var record = new LinkedHashMap<String, Object>();
+          record.put("file", file);
+          record.put("expected", status);
+          record.putAll(answer);
+          record.remove("id");
+          jsonWriter.println(Json.toString(record));
+          jsonWriter.flush();
+        }
+
+        switch (result) {
+          case "sat", "unsat" -> {
+            var sat = result.equals("sat");
+            if (status != null)
+              switch (status) {
+                case "UNSAT", "ContradictoryAxioms", "Unsatisfiable", "Theorem" -> {
+                  if (sat) throw new IllegalStateException(file + ": " + status);
+                }
+                case "SAT", "Satisfiable", "CounterSatisfiable" -> {
+                  if (!sat) throw new IllegalStateException(file + ": " + status);
+                }
+                default -> throw new IllegalStateException(file + ": " + status);
+              }
+            solved++;
+          }
+          case "error" -> {
+            System.err.printf("%s: %s\n", file, answer.get("message"));
+            errors++;
+          }
+        }
       }
+    } finally {
+      daemon.close();
+      if (csvWriter != null) csvWriter.close();
+      if (jsonWriter != null) jsonWriter.close();
     }
     System.out.println(solved);
+    if (errors > 0) System.out.printf("%d errors\n", errors);
     System.out.printf("%.3f\n", time(start));
     Stats.print();
   }
+
+  // A CSV field, quoted if necessary
+  private static String csv(String s) {
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0) return s;
+    return '"' + s.replace("\"", "\"\"") + '"';
+  }
 }
@@ -0,0 +1,506 @@
+package olivine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Simplifies a propositional problem before it goes to the SAT solver, in the manner of SatELite.
+// Each clause is found from its literals through occurrence lists. Stages, in order:
+//
+// Unit propagation to a fixpoint, removing satisfied clauses and false literals
+// Pure literal elimination
+// Backward subsumption, and self-subsuming resolution, which removes a literal from a clause when
+//   the rest of the clause, with the literal negated, is subsumed
+// Bounded variable elimination, which replaces the clauses of a variable with their resolvents, if
+//   there are no more of those
+// Failed literal probing: a literal whose propagation gives a conflict must be false
+//
+// The stages that can take long give up after a number of steps, set by the strategy. Clauses
+// removed with an eliminated variable are kept, so a model of what is left can be made a model of
+// the problem as given. Literals are numbered as in Cdcl
+public final class SatPreprocessor {
+  private static final byte TRUE = 1;
+  private static final byte FALSE = -1;
+
+  // Variables are eliminated only if their resolvents are no longer than this
+  private static final int MAX_RESOLVENT = 20;
+
+  private static final class IntList {
+    int[] v = new int[4];
+    int size;
+
+    void add(int x) {
+      if (size == v.length) v = Arrays.copyOf(v, size * 2);
+      v[size++] = x;
+    }
+
+    void remove(int x) {
+      for (var i = 0; i < size; i++)
+        if (v[i] == x) {
+          v[i] = v[--size];
+          return;
+        }
+    }
+  }
+
+  private final int vars;
+  private final Strategy strategy;
+  private boolean inconsistent;
+
+  // Clauses are numbered in the order they were added, and are null once removed. Each has a
+  // signature, a bit for each of its variables modulo 64, so most clauses that cannot subsume
+  // another are seen at once not to
+  private int[][] clauses = new int[16][];
+  private long[] signatures = new long[16];
+  private int clauseCount;
+
+  // Indexed by literal. Occurrence lists can still hold clauses that have been removed
+  private final IntList[] occurs;
+  private final byte[] values;
+  private final int[] marks;
+  private int mark;
+
+  // Literals assigned at the top level, and how many have been propagated
+  private final IntList units = new IntList();
+  private int propagated;
+
+  // Clauses removed with eliminated variables, each with the literal of the variable first
+  private final boolean[] eliminated;
+  private final List<int[]> removed = new ArrayList<>();
+
+  private boolean[] model;
+
+  // Steps taken by the current stage
+  private long steps;
+
+  public SatPreprocessor(DimacsParser.Problem problem, Strategy strategy) {
+    this.strategy = strategy;
+    vars = problem.vars;
+    occurs = new IntList[(vars + 1) * 2];
+    for (var i = 0; i < occurs.length; i++) occurs[i] = new IntList();
+    values = new byte[(vars + 1) * 2];
+    marks = new int[(vars + 1) * 2];
+    eliminated = new boolean[vars + 1];
+    var v = problem.literals;
+    for (int i = 0, j = 0; j < problem.size; j++)
+      if (v[j] == 0) {
+        add(v, i, j);
+        i = j + 1;
+      }
+  }
+
+  private static int lit(int x) {
+    return x > 0 ? x << 1 : -x << 1 | 1;
+  }
+
+  private static long signature(int[] c) {
+    long s = 0;
+    for (var l : c) s |= 1L << (l >> 1);
+    return s;
+  }
+
+  // Adds the clause of the literals v[i], ..., v[j - 1]
+  private void add(int[] v, int i, int j) {
+    var c = new int[j - i];
+    var n = 0;
+    mark++;
+    for (var k = i; k < j; k++) {
+      var l = lit(v[k]);
+      if (marks[l ^ 1] == mark) return;
+      if (marks[l] == mark) continue;
+      marks[l] = mark;
+      c[n++] = l;
+    }
+    add(Arrays.copyOf(c, n));
+  }
+
+  // Adds a clause without repeated or complementary literals
+  private void add(int[] c) {
+    var n = 0;
+    for (var l : c) {
+      if (values[l] == TRUE) return;
+      if (values[l] == 0) c[n++] = l;
+    }
+    if (n < c.length) c = Arrays.copyOf(c, n);
+    switch (n) {
+      case 0 -> inconsistent = true;
+      case 1 -> assign(c[0]);
+      default -> {
+        if (clauseCount == clauses.length) {
+          clauses = Arrays.copyOf(clauses, clauseCount * 2);
+          signatures = Arrays.copyOf(signatures, clauseCount * 2);
+        }
+        clauses[clauseCount] = c;
+        signatures[clauseCount] = signature(c);
+        for (var l : c) occurs[l].add(clauseCount);
+        clauseCount++;
+      }
+    }
+  }
+
+  private void remove(int c) {
+    clauses[c] = null;
+  }
+
+  // Removes a literal from a clause
+  private void strengthen(int c, int l) {
+    var v = clauses[c];
+    var w = new int[v.length - 1];
+    var n = 0;
+    for (var k : v) if (k != l) w[n++] = k;
+    occurs[l].remove(c);
+    if (n == 1) {
+      remove(c);
+      assign(w[0]);
+      return;
+    }
+    clauses[c] = w;
+    signatures[c] = signature(w);
+  }
+
+  // The clauses a literal occurs in, dropping any that have been removed
+  private IntList occurs(int l) {
+    var list = occurs[l];
+    var n = 0;
+    for (var i = 0; i < list.size; i++) {
+      var c = list.v[i];
+      if (clauses[c] != null) list.v[n++] = c;
+    }
+    list.size = n;
+    return list;
+  }
+
+  // Unit propagation
+  private void assign(int l) {
+    if (values[l] == TRUE) return;
+    if (values[l] == FALSE) {
+      inconsistent = true;
+      return;
+    }
+    values[l] = TRUE;
+    values[l ^ 1] = FALSE;
+    units.add(l);
+  }
+
+  private void propagate() {
+    while (!inconsistent && propagated < units.size) {
+      var l = units.v[propagated++];
+      var list = occurs(l);
+      for (var i = 0; i < list.size; i++) remove(list.v[i]);
+      list.size = 0;
+
+      // Every clause with the negation loses it
+      list = occurs(l ^ 1);
+      var v = Arrays.copyOf(list.v, list.size);
+      list.size = 0;
+      for (var c : v) {
+        var w = clauses[c];
+        if (w == null) continue;
+        var x = new int[w.length - 1];
+        var n = 0;
+        for (var k : w) if (k != (l ^ 1)) x[n++] = k;
+        if (n == 1) {
+          remove(c);
+          assign(x[0]);
+          continue;
+        }
+        clauses[c] = x;
+        signatures[c] = signature(x);
+      }
+    }
+  }
+
+  // Variable elimination. The clauses of the variable are kept for making a model, with its literal
+  // first
+  private void eliminate(int v) {
+    eliminated[v] = true;
+    for (var l = v << 1; l <= (v << 1 | 1); l++) {
+      var list = occurs(l);
+      for (var i = 0; i < list.size; i++) {
+        var c = list.v[i];
+        var w = clauses[c].clone();
+        for (var k = 0; k < w.length; k++)
+          if (w[k] == l) {
+            w[k] = w[0];
+            w[0] = l;
+          }
+        removed.add(w);
+        remove(c);
+      }
+      list.size = 0;
+    }
+  }
+
+  private void pure() {
+    var n = 0;
+    for (var v = 1; v <= vars; v++) {
+      if (eliminated[v] || values[v << 1] != 0) continue;
+      var positive = occurs(v << 1).size;
+      var negative = occurs(v << 1 | 1).size;
+      if ((positive == 0) != (negative == 0)) {
+        eliminate(v);
+        n++;
+      }
+    }
+    Stats.inc("sat pure literals", n);
+  }
+
+  // Subsumption. Returns -1 if the first clause does not subsume the second, -2 if it does, or
+  // the literal the second can lose by self-subsuming resolution
+  private int subsumes(int[] c, int[] d) {
+    mark++;
+    for (var l : d) marks[l] = mark;
+    var flipped = -2;
+    for (var l : c) {
+      if (marks[l] == mark) continue;
+      if (marks[l ^ 1] == mark && flipped == -2) flipped = l ^ 1;
+      else return -1;
+    }
+    return flipped;
+  }
+
+  // The stages can take seconds on a large problem, so they check between clauses or variables
+  // whether a deadline, or another strategy finishing first, means the search is to stop
+  private static void checkInterrupt() {
+    if (Thread.currentThread().isInterrupted()) throw new Fail();
+  }
+
+  private void subsume() {
+    steps = 0;
+    var subsumed = 0;
+    var strengthened = 0;
+
+    // Shorter clauses first, as they subsume more. Sorted by counting the clauses of each length
+    var max = 0;
+    for (var c = 0; c < clauseCount; c++)
+      if (clauses[c] != null) max = Math.max(max, clauses[c].length);
+    var starts = new int[max + 2];
+    for (var c = 0; c < clauseCount; c++) if (clauses[c] != null) starts[clauses[c].length + 1]++;
+    for (var n = 1; n <= max + 1; n++) starts[n] += starts[n - 1];
+    var queue = new IntList();
+    queue.v = new int[Math.max(starts[max + 1], 4)];
+    queue.size = starts[max + 1];
+    for (var c = 0; c < clauseCount; c++)
+      if (clauses[c] != null) queue.v[starts[clauses[c].length]++] = c;
+
+    for (var i = 0; i < queue.size && steps < strategy.subsumeEffort && !inconsistent; i++) {
+      checkInterrupt();
+      var c = queue.v[i];
+      var v = clauses[c];
+      if (v == null) continue;
+
+      // Clauses the clause could subsume or strengthen contain its rarest variable
+      var best = v[0];
+      for (var l : v)
+        if (occurs[l].size + occurs[l ^ 1].size < occurs[best].size + occurs[best ^ 1].size)
+          best = l;
+      for (var l = best & ~1; l <= (best | 1); l++) {
+        var list = occurs(l);
+        var candidates = Arrays.copyOf(list.v, list.size);
+        for (var d : candidates) {
+          steps++;
+          var w = clauses[d];
+          if (d == c || w == null || w.length < v.length) continue;
+          if ((signatures[c] & ~signatures[d]) != 0) continue;
+          steps += w.length;
+          var r = subsumes(v, w);
+          if (r == -2) {
+            remove(d);
+            subsumed++;
+          } else if (r >= 0) {
+            strengthen(d, r);
+            strengthened++;
+
+            // The shorter clause may now subsume others in turn
+            if (clauses[d] != null) queue.add(d);
+          }
+        }
+        if (clauses[c] == null) break;
+      }
+      propagate();
+    }
+    Stats.inc("sat subsumed clauses", subsumed);
+    Stats.inc("sat strengthened clauses", strengthened);
+  }
+
+  // Resolves two clauses on a variable, returning null if the resolvent is a tautology
+  private int[] resolve(int[] c, int[] d, int v) {
+    mark++;
+    var r = new int[c.length + d.length - 2];
+    var n = 0;
+    for (var l : c)
+      if (l >> 1 != v) {
+        marks[l] = mark;
+        r[n++] = l;
+      }
+    for (var l : d)
+      if (l >> 1 != v) {
+        if (marks[l ^ 1] == mark) return null;
+        if (marks[l] != mark) r[n++] = l;
+      }
+    return Arrays.copyOf(r, n);
+  }
+
+  // Bounded variable elimination, trying variables with fewer occurrences first
+  private void eliminate() {
+    steps = 0;
+    var n = 0;
+    var order = new Integer[vars];
+    for (var v = 1; v <= vars; v++) order[v - 1] = v;
+    var counts = new int[vars + 1];
+    for (var v = 1; v <= vars; v++) counts[v] = occurs(v << 1).size + occurs(v << 1 | 1).size;
+    Arrays.sort(order, (a, b) -> Integer.compare(counts[a], counts[b]));
+
+    var resolvents = new ArrayList<int[]>();
+    loop:
+    for (int v : order) {
+      if (steps >= strategy.eliminateEffort || inconsistent) break;
+      checkInterrupt();
+      if (eliminated[v] || values[v << 1] != 0) continue;
+      var positive = occurs(v << 1);
+      var negative = occurs(v << 1 | 1);
+      if (positive.size + negative.size == 0) continue;
+      resolvents.clear();
+      for (var i = 0; i < positive.size; i++)
+        for (var j = 0; j < negative.size; j++) {
+          var c = clauses[positive.v[i]];
+          var d = clauses[negative.v[j]];
+          steps += c.length + d.length;
+          var r = resolve(c, d, v);
+          if (r == null) continue;
+          if (r.length > MAX_RESOLVENT || resolvents.size() == positive.size + negative.size)
+            continue loop;
+          resolvents.add(r);
+        }
+      eliminate(v);
+      n++;
+      for (var r : resolvents) add(r);
+      propagate();
+    }
+    Stats.inc("sat eliminated variables", n);
+  }
+
+  // Failed literal probing. Propagates the literal as far as the clauses allow, and returns
+  // whether that gives a conflict. The assignment is then undone
+  private boolean fails(int l) {
+    var trail = new IntList();
+    values[l] = TRUE;
+    values[l ^ 1] = FALSE;
+    trail.add(l);
+    var conflict = false;
+    loop:
+    for (var i = 0; i < trail.size; i++) {
+      var list = occurs(trail.v[i] ^ 1);
+      for (var j = 0; j < list.size; j++) {
+        var c = clauses[list.v[j]];
+        steps += c.length;
+        var unassigned = -1;
+        var count = 0;
+        for (var k : c) {
+          if (values[k] == TRUE) {
+            count = 2;
+            break;
+          }
+          if (values[k] == 0 && count++ == 0) unassigned = k;
+        }
+        if (count == 0) {
+          conflict = true;
+          break loop;
+        }
+        if (count == 1) {
+          values[unassigned] = TRUE;
+          values[unassigned ^ 1] = FALSE;
+          trail.add(unassigned);
+        }
+      }
+    }
+    for (var i = 0; i < trail.size; i++) {
+      var k = trail.v[i];
+      values[k] = 0;
+      values[k ^ 1] = 0;
+    }
+    return conflict;
+  }
+
+  private void probe() {
+    steps = 0;
+    var n = 0;
+    for (var v = 1; v <= vars && steps < strategy.probeEffort && !inconsistent; v++) {
+      checkInterrupt();
+      for (var l = v << 1; l <= (v << 1 | 1); l++) {
+        if (eliminated[v] || values[l] != 0) continue;
+        if (fails(l)) {
+          assign(l ^ 1);
+          propagate();
+          n++;
+        }
+      }
+    }
+    Stats.inc("sat failed literals", n);
+  }
+
+  // Returns false if the problem turns out to be unsatisfiable
+  private boolean simplify() {
+    propagate();
+    if (!inconsistent) pure();
+    if (!inconsistent && strategy.subsumeEffort > 0) subsume();
+    if (!inconsistent && strategy.eliminateEffort > 0) eliminate();
+    if (!inconsistent && strategy.probeEffort > 0) probe();
+    return !inconsistent;
+  }
+
+  // Throws Fail if the solver takes more than the given number of steps
+  public boolean solve(long steps) {
+    var start = System.nanoTime();
+    var simplified = simplify();
+    Stats.inc("sat preprocessing ms", (System.nanoTime() - start) / 1_000_000);
+    if (!simplified) return false;
+
+    // Variables that are left are numbered again from 1, so the solver has none to skip
+    var inner = new int[vars + 1];
+    var outer = new IntList();
+    outer.add(0);
+    var solver = new Cdcl();
+    var remaining = 0;
+    for (var c = 0; c < clauseCount; c++) {
+      var v = clauses[c];
+      if (v == null) continue;
+      remaining++;
+      var w = new int[v.length];
+      for (var i = 0; i < v.length; i++) {
+        var x = v[i] >> 1;
+        if (inner[x] == 0) {
+          inner[x] = outer.size;
+          outer.add(x);
+        }
+        w[i] = (v[i] & 1) == 0 ? inner[x] : -inner[x];
+      }
+      solver.add(w);
+    }
+    Stats.inc("sat remaining clauses", remaining);
+    if (!solver.solve(steps)) return false;
+
+    model = new boolean[vars + 1];
+    for (var v = 1; v <= vars; v++)
+      model[v] = inner[v] != 0 ? solver.value(inner[v]) : values[v << 1] == TRUE;
+
+    // Each clause removed with a variable is made true by its literal, if by nothing else. Later
+    // eliminations did not know about earlier variables, so these go last first
+    loop:
+    for (var i = removed.size() - 1; i >= 0; i--) {
+      var c = removed.get(i);
+      for (var l : c) if (model[l >> 1] == ((l & 1) == 0)) continue loop;
+      model[c[0] >> 1] = (c[0] & 1) == 0;
+    }
+    return true;
+  }
+
+  // The value of a variable in a model of the problem as given, once it has been solved
+  public boolean value(int v) {
+    return model[v];
+  }
+
+  public static boolean sat(DimacsParser.Problem problem, Strategy strategy, long steps) {
+    return new SatPreprocessor(problem, strategy).solve(steps);
+  }
+}
@@ -4,17 +4,48 @@ import java.text.DecimalFormat;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+// Counters for the problem being solved. Each thread counts into the set of counters of the thread
+// that started it, so the threads working on one problem, such as strategies in a portfolio, share
+// one set, while problems solved at the same time each start their own
 public final class Stats {
-  private static final Map<String, Long> map = new LinkedHashMap<>();
+  private static final InheritableThreadLocal<Map<String, Long>> current =
+      new InheritableThreadLocal<>() {
+        @Override
+        protected Map<String, Long> initialValue() {
+          return new LinkedHashMap<>();
+        }
+      };
 
   private Stats() {}
 
+  // Starts a fresh set of counters for the current thread, and threads it starts from now on
+  public static void reset() {
+    current.set(new LinkedHashMap<>());
+  }
+
+  public static Map<String, Long> get() {
+    var map = current.get();
+    synchronized (map) {
+      return new LinkedHashMap<>(map);
+    }
+  }
+
   public static void inc(String key) {
     inc(key, 1);
   }
 
   public static void inc(String key, long n) {
-    map.put(key, map.getOrDefault(key, 0L) + n);
+    var map = current.get();
+    synchronized (map) {
+      map.put(key, map.getOrDefault(key, 0L) + n);
+    }
+  }
+
+  public static void max(String key, long n) {
+    var map = current.get();
+    synchronized (map) {
+      map.put(key, Math.max(map.getOrDefault(key, 0L), n));
+    }
   }
 
   public static void inc(String key, long i, long n) {
@@ -22,6 +53,7 @@ public final class Stats {
   }
 
   public static void print() {
+    var map = get();
     if (map.isEmpty()) return;
     System.out.println();
     var df = new DecimalFormat("#,###");
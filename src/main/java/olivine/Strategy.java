@@ -0,0 +1,94 @@
+package olivine;
+
+// Settings that affect how the superposition prover searches for a proof, and how much a
+// propositional problem is simplified before the SAT solver gets it
+public final class Strategy {
+  // Threads used to generate inferences between the given clause and the active clauses
+  public int threads = 1;
+
+  // How often the given clause is picked by age, by weight, and by weight among clauses derived
+  // from the negated conjecture
+  public int ageRatio = 1;
+  public int weightRatio = 4;
+  public int goalRatio = 1;
+
+  // Passive clauses kept in memory; beyond this, the heavier half are spilled to disk
+  public int passiveLimit = 2000000;
+
+  // Queue superposition inferences as recipes, making the clauses only when selected
+  public boolean lazy;
+
+  // Split clauses into parts that share no variables, and let a SAT solver choose among them
+  public boolean avatar;
+
+  // Which negative literal, if any, is the only one of a clause to take part in inferences
+  public LiteralSelection selection = LiteralSelection.NONE;
+
+  // How the term order ranks symbols
+  public Precedence precedence = Precedence.OCCURRENCE;
+
+  // Steps each stage of SAT preprocessing may take: subsumption, variable elimination and failed
+  // literal probing. 0 skips a stage
+  public long subsumeEffort = 30_000_000;
+  public long eliminateEffort = 30_000_000;
+  public long probeEffort = 3_000_000;
+
+  // Sets a field from an option as given on the command line, or in a request to the daemon. An
+  // option that takes no argument gets null
+  public void set(String option, String arg) {
+    switch (option) {
+      case "threads" -> {
+        var n = Integer.parseInt(arg);
+        threads = n > 0 ? n : Runtime.getRuntime().availableProcessors();
+      }
+      case "pick-ratio" -> {
+        var v = arg.split(":");
+        if (v.length < 2 || v.length > 3)
+          throw new IllegalArgumentException(arg + ": expected age:weight[:goal]");
+        var age = Integer.parseInt(v[0]);
+        var weight = Integer.parseInt(v[1]);
+        var goal = v.length == 3 ? Integer.parseInt(v[2]) : 0;
+        if (age < 0 || weight < 0 || goal < 0)
+          throw new IllegalArgumentException(arg + ": negative pick ratio");
+        ageRatio = age;
+        weightRatio = weight;
+        goalRatio = goal;
+      }
+      case "passive-limit" -> {
+        var n = Integer.parseInt(arg);
+        if (n < 2) throw new IllegalArgumentException(arg + ": passive limit too small");
+        passiveLimit = n;
+      }
+      case "lazy" -> lazy = arg == null || Boolean.parseBoolean(arg);
+      case "avatar" -> avatar = arg == null || Boolean.parseBoolean(arg);
+      case "selection" -> selection = LiteralSelection.of(arg);
+      case "precedence" -> precedence = Precedence.of(arg);
+      case "sat-effort" -> {
+        var v = arg.split(":");
+        if (v.length != 3)
+          throw new IllegalArgumentException(arg + ": expected subsume:eliminate:probe");
+        subsumeEffort = Long.parseLong(v[0]);
+        eliminateEffort = Long.parseLong(v[1]);
+        probeEffort = Long.parseLong(v[2]);
+      }
+      default -> throw new IllegalArgumentException(option + ": unknown option");
+    }
+  }
+
+  public Strategy copy() {
+    var s = new Strategy();
+    s.threads = threads;
+    s.ageRatio = ageRatio;
+    s.weightRatio = weightRatio;
+    s.goalRatio = goalRatio;
+    s.passiveLimit = passiveLimit;
+    s.lazy = lazy;
+    s.avatar = avatar;
+    s.selection = selection;
+    s.precedence = precedence;
+    s.subsumeEffort = subsumeEffort;
+    s.eliminateEffort = eliminateEffort;
+    s.probeEffort = probeEffort;
+    return s;
+  }
+}
@@ -0,0 +1,85 @@
+package olivine;
+
+// Mutable alternative to FMap, for the inner loops of inference and subsumption. Bindings are kept
+// in an open addressing hash table keyed by variable number, so lookup does not depend on how
+// many other variables are bound, and binding a variable does not allocate. Every binding is also
+// recorded on a trail, so a backtracking search can take a mark and later undo back to it
+public final class Substitution {
+  private Var[] keys = new Var[16];
+  private Term[] values = new Term[16];
+  private Var[] trail = new Var[8];
+  private int size;
+
+  private static int slot(Var[] keys, Var a) {
+    var mask = keys.length - 1;
+    var i = (a.id * 0x9e3779b9) & mask;
+    while (keys[i] != null && keys[i] != a) i = (i + 1) & mask;
+    return i;
+  }
+
+  public Term get(Var a) {
+    return values[slot(keys, a)];
+  }
+
+  public void bind(Var a, Term b) {
+    assert get(a) == null;
+    if (size == trail.length) {
+      var trail1 = new Var[size * 2];
+      System.arraycopy(trail, 0, trail1, 0, size);
+      trail = trail1;
+    }
+    trail[size++] = a;
+    if (size * 2 > keys.length) {
+      // Reinsert in trail order, so that entries are still removed in the reverse of the order
+      // they were inserted, which is what makes it safe to remove them by just clearing the slot
+      var keys0 = keys;
+      var values0 = values;
+      keys = new Var[keys0.length * 2];
+      values = new Term[keys.length];
+      for (var i = 0; i < size - 1; i++) {
+        var x = trail[i];
+        var j = slot(keys, x);
+        keys[j] = x;
+        values[j] = values0[slot(keys0, x)];
+      }
+    }
+    var i = slot(keys, a);
+    keys[i] = a;
+    values[i] = b;
+  }
+
+  public int mark() {
+    return size;
+  }
+
+  public void undo(int mark) {
+    while (size > mark) {
+      var i = slot(keys, trail[--size]);
+      keys[i] = null;
+      values[i] = null;
+    }
+  }
+
+  public void clear() {
+    undo(0);
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public String toString() {
+    var sb = new StringBuilder();
+    sb.append('{');
+    for (var i = 0; i < size; i++) {
+      if (i > 0) sb.append(", ");
+      var a = trail[i];
+      sb.append(a);
+      sb.append(':');
+      sb.append(get(a));
+    }
+    sb.append('}');
+    return sb.toString();
+  }
+}
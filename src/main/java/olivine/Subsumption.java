@@ -2,25 +2,64 @@ package olivine;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public final class Subsumption {
+  // Feature vector indexing (Schulz, 'Simple and Efficient Clause Subsumption with Feature Vector
+  // Indexing', 2013). Every feature is a count that can only go up under matching, so a clause can
+  // only subsume clauses whose features are all greater or equal to its own. Symbol occurrences are
+  // counted in a few buckets per polarity, and all features are capped, which keeps the trie small
+  // without breaking that property
+  private static final int BUCKETS = 4;
+  private static final int MAX_FEATURE = 15;
+
+  private final Map<Object, Integer> symbols = new HashMap<>();
+  private final WeakTrie<Clause> index = new WeakTrie<>();
+
+  private final Substitution map = new Substitution();
+
   // Time limit
   private int steps;
 
-  private FMap search(FMap map, Term[] c, Term[] c2, Term[] d, Term[] d2) {
+  private void count(Term a, int[] key, int i) {
+    if (a instanceof Var) return;
+    Object symbol = a.tag();
+    if (a.tag() == Tag.CALL) symbol = a.get(0);
+    else if (a.size() == 0) symbol = a;
+    key[i + symbols.computeIfAbsent(symbol, k -> symbols.size()) % BUCKETS]++;
+    for (var j = a.tag() == Tag.CALL ? 1 : 0; j < a.size(); j++) count(a.get(j), key, i);
+  }
+
+  private int[] features(Clause c) {
+    // literal count, max depth and symbol counts, for negative then positive literals
+    var key = new int[2 * (2 + BUCKETS)];
+    for (var i = 0; i < c.literals.length; i++) {
+      var a = c.literals[i];
+      var j = i < c.negativeSize ? 0 : 2 + BUCKETS;
+      key[j]++;
+      key[j + 1] = Math.max(key[j + 1], a.depth());
+      count(a, key, j + 2);
+    }
+    for (var i = 0; i < key.length; i++) key[i] = Math.min(key[i], MAX_FEATURE);
+    return key;
+  }
+
+  private boolean search(Term[] c, Term[] c2, Term[] d, Term[] d2) {
     if (steps-- == 0) throw new Fail();
 
     // Matched everything in one polarity
     if (c.length == 0) {
       // Already matched everything in the other polarity
-      if (c2 == null) return map;
+      if (c2 == null) return true;
 
       // Try the other polarity
-      return search(map, c2, null, d2, null);
+      return search(c2, null, d2, null);
     }
 
     // Try matching literals
+    var mark = map.mark();
     for (var ci = 0; ci < c.length; ci++) {
       Term[] c1 = null;
       var ce = new Equation(c[ci]);
@@ -29,33 +68,25 @@ public final class Subsumption {
         var de = new Equation(d[di]);
 
         // Try orienting equation one way
-        var m = ce.left.match(map, de.left);
-        if (m != null) {
-          m = ce.right.match(m, de.right);
-          if (m != null) {
-            if (c1 == null) c1 = Term.remove(c, ci);
-            d1 = Term.remove(d, di);
-            m = search(m, c1, c2, d1, d2);
-            if (m != null) return m;
-          }
+        if (ce.left.match(map, de.left) && ce.right.match(map, de.right)) {
+          if (c1 == null) c1 = Term.remove(c, ci);
+          d1 = Term.remove(d, di);
+          if (search(c1, c2, d1, d2)) return true;
         }
+        map.undo(mark);
 
         // And the other way
-        m = ce.left.match(map, de.right);
-        if (m != null) {
-          m = ce.right.match(m, de.left);
-          if (m != null) {
-            if (c1 == null) c1 = Term.remove(c, ci);
-            if (d1 == null) d1 = Term.remove(d, di);
-            m = search(m, c1, c2, d1, d2);
-            if (m != null) return m;
-          }
+        if (ce.left.match(map, de.right) && ce.right.match(map, de.left)) {
+          if (c1 == null) c1 = Term.remove(c, ci);
+          if (d1 == null) d1 = Term.remove(d, di);
+          if (search(c1, c2, d1, d2)) return true;
         }
+        map.undo(mark);
       }
     }
 
     // No match
-    return null;
+    return false;
   }
 
   public boolean subsumes(Clause c, Clause d) {
@@ -85,21 +116,40 @@ public final class Subsumption {
       // Worst-case time is exponential,
       // so give up if taking too long
       steps = 1000;
-      var map = search(FMap.EMPTY, c1, c2, d1, d2);
-      return map != null;
+      return search(c1, c2, d1, d2);
     } catch (Fail e) {
       return false;
+    } finally {
+      map.clear();
     }
   }
 
-  public boolean subsumesForward(List<Clause> clauses, Clause c) {
-    for (var d : clauses) if (subsumes(d, c)) return true;
-    return false;
+  public void add(Clause c) {
+    index.add(features(c), c);
+  }
+
+  public void remove(Clause c) {
+    index.remove(features(c), c);
+  }
+
+  // Is c subsumed by any indexed clause? A clause can only subsume one that depends on all the
+  // splits it does, or it could be gone when the other is still needed
+  public boolean subsumesForward(Clause c) {
+    return index.findLessEqual(
+            features(c), d -> Clause.subset(d.splits, c.splits) && subsumes(d, c))
+        != null;
   }
 
-  public List<Clause> subsumeBackward(Clause c, List<Clause> clauses) {
-    var v = new ArrayList<Clause>(clauses.size());
-    for (var d : clauses) if (!subsumes(c, d)) v.add(d);
+  // Remove and return the indexed clauses subsumed by c
+  public List<Clause> subsumeBackward(Clause c) {
+    var key = features(c);
+    var v = new ArrayList<Clause>();
+    index.forGreaterEqual(
+        key,
+        d -> {
+          if (Clause.subset(c.splits, d.splits) && subsumes(c, d)) v.add(d);
+        });
+    for (var d : v) remove(d);
     return v;
   }
 }
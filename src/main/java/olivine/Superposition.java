@@ -1,11 +1,15 @@
 package olivine;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public final class Superposition {
   private final KnuthBendixOrder order;
-  private PriorityQueue<Clause> passive =
-      new PriorityQueue<>(Comparator.comparingLong(Superposition::volume));
+  private final Passive passive;
+
+  // Iterations of the given clause loop so far
+  private long iteration;
 
   // if we run out of inferences, unless one of the reasons applies for the proof search to be
   // incomplete,
@@ -14,30 +18,140 @@ public final class Superposition {
   private boolean complete = true;
   private final boolean result;
 
-  private Clause c, d;
-  private int ci, cj, di;
-  private Term c0, c1, c2, c3, d0, d1;
-  private final List<Integer> position = new ArrayList<>();
+  // Generating superposition inferences between the given clause and the active clauses is split
+  // into chunks that run on this pool, if there is more than one thread
+  private final ForkJoinPool pool;
+  private static final int CHUNKS_PER_THREAD = 4;
+  private static final int MIN_CHUNK = 32;
+
+  private final LiteralSelection selection;
+
+  // Superposition inferences go to passive as recipes, only made into clauses when selected
+  private final boolean lazy;
+  private final Substitution lazyMap = new Substitution();
+  private final Inference lazyInference = new Inference();
+
+  // Indexes of active clauses, to find superposition partners for the given clause without trying
+  // to unify against every subterm of every active clause
+  private final FingerprintIndex<From> froms = new FingerprintIndex<>();
+  private final FingerprintIndex<Into> intos = new FingerprintIndex<>();
+  private final Map<Clause, List<From>> activeFroms = new HashMap<>();
+  private final Map<Clause, List<Into>> activeIntos = new HashMap<>();
+  private long activated;
+
+  // Active clauses, in the order they were activated
+  private final Set<Clause> active = new LinkedHashSet<>();
+  private final Subsumption subsumption = new Subsumption();
+
+  // Active unit equations, oriented as rewrite rules and indexed by left side, used to simplify
+  // other clauses by demodulation
+  private final FingerprintIndex<Rule> rules = new FingerprintIndex<>();
+  private final Map<Clause, List<Rule>> activeRules = new HashMap<>();
+  private final Substitution rewriteMap = new Substitution();
+
+  // AVATAR splitting, if not null: a clause made of parts that share no variables is replaced by
+  // the parts, each named by a variable of the SAT solver, which chooses the parts to work with.
+  // Clauses depending on parts the model does not choose are locked away until it does
+  private final Cdcl sat;
+  private final ClauseCodec codec = new ClauseCodec();
+  private final Map<String, Integer> components = new HashMap<>();
+  private final List<Clause> locked = new ArrayList<>();
+
+  // A side of a positive equation in c, that can be used to rewrite with
+  private static final class From {
+    final long number;
+    final int ordinal;
+    final Clause c;
+    final int ci;
+    final Term c0, c1;
+
+    From(long number, int ordinal, Clause c, int ci, Term c0, Term c1) {
+      this.number = number;
+      this.ordinal = ordinal;
+      this.c = c;
+      this.ci = ci;
+      this.c0 = c0;
+      this.c1 = c1;
+    }
+  }
+
+  // A subterm of a side of an equation in d, that can be rewritten
+  private static final class Into {
+    final long number;
+    final int ordinal;
+    final Clause d;
+    final int di;
+    final Term d0, d1;
+    final List<Integer> position;
+    final Term a;
+
+    Into(
+        long number,
+        int ordinal,
+        Clause d,
+        int di,
+        Term d0,
+        Term d1,
+        List<Integer> position,
+        Term a) {
+      this.number = number;
+      this.ordinal = ordinal;
+      this.d = d;
+      this.di = di;
+      this.d0 = d0;
+      this.d1 = d1;
+      this.position = position;
+      this.a = a;
+    }
+  }
+
+  // Rewrites instances of l to instances of r, from a unit equation l = r
+  private static final class Rule {
+    final Term l, r;
 
-  private static long volume(Clause c) {
-    var n = c.literals.length * 2L;
-    for (var a : c.literals) n += a.symbolCount();
-    return n;
+    // l is greater than r in the term order, so every instance can be used. Otherwise, the
+    // instance has to be checked each time
+    final boolean oriented;
+
+    // Those of the equation. The rule only rewrites clauses that depend on all of them, so the
+    // rewritten clause is not lost when the equation is
+    final int[] splits;
+
+    Rule(Term l, Term r, boolean oriented, int[] splits) {
+      this.l = l;
+      this.r = r;
+      this.oriented = oriented;
+      this.splits = splits;
+    }
   }
 
+  // A candidate superposition inference. These are sorted in the order the nested loops over active
+  // clauses would have generated them, so the index changes only how fast inferences are found,
+  // not which ones are found or the order they are queued
+  private static final class Candidate {
+    final long number;
+    final boolean reversed;
+    final From from;
+    final Into into;
+
+    Candidate(long number, boolean reversed, From from, Into into) {
+      this.number = number;
+      this.reversed = reversed;
+      this.from = from;
+      this.into = into;
+    }
+  }
+
+  private static final Comparator<Candidate> CANDIDATE_ORDER =
+      Comparator.<Candidate>comparingLong(x -> x.number)
+          .thenComparing(x -> x.reversed)
+          .thenComparingInt(x -> x.from.ordinal)
+          .thenComparingInt(x -> x.into.ordinal);
+
   private void clause(Clause c) {
+    c = simplify(c);
     if (c.isTrue()) return;
-    // TODO: is the clause limit useful?
-    var clauseLimit = 10000000;
-    if (passive.size() >= clauseLimit) {
-      var passive1 = new PriorityQueue<>(Comparator.comparingLong(Superposition::volume));
-      for (var i = 0; i < clauseLimit / 2; i++) passive1.add(passive.poll());
-      passive = passive1;
-
-      // If we had to discard clauses to save memory, completeness was lost,
-      // so running out of inferences doesn't prove anything
-      complete = false;
-    }
+    c.birth = iteration;
     passive.add(c);
   }
 
@@ -73,271 +187,604 @@ public final class Superposition {
         : notStrictlyMaximal(literals, negativeSize, i, e);
   }
 
-  /*
-  Equality resolution
-    c | c0 != c1
-  and
-    map = unify(c0, c1)
-  ->
-    c/map
-  */
+  // State of the inferences being made from one clause, or one pair of clauses, and the clauses
+  // they produce. Each thread generating inferences has its own
+  private final class Inference {
+    final List<Clause> out = new ArrayList<>();
+    final Substitution map = new Substitution();
+    Clause c, d;
+    int ci, cj, di;
+    Term c0, c1, c2, c3, d0, d1;
+    List<Integer> position;
+
+    // A clause is related to the goal if either parent is, and depends on the splits of both
+    void add(Clause e) {
+      e.goal = c.goal || (d != null && d.goal);
+      e.splits = d == null ? c.splits : Clause.union(c.splits, d.splits);
+      out.add(e);
+    }
 
-  // unify, substitute and make new clause
-  private void resolvem() {
-    var map = c0.unify(FMap.EMPTY, c1);
-    if (map == null) return;
+    /*
+    Equality resolution
+      c | c0 != c1
+    and
+      map = unify(c0, c1)
+    ->
+      c/map
+    */
+
+    // unify, substitute and make new clause
+    private void resolvem() {
+      map.clear();
+      if (!c0.unify(map, c1)) return;
+
+      var c0m = c0.replace(map);
+      var c1m = c1.replace(map);
+
+      var cliterals = new Term[c.literals.length];
+      for (var i = 0; i < c.literals.length; i++) cliterals[i] = c.literals[i].replace(map);
+      if (c.selected < 0 && notMaximal(cliterals, c.negativeSize, ci, new Equation(c0m, c1m)))
+        return;
 
-    var c0m = c0.replace(map);
-    var c1m = c1.replace(map);
+      // Negative literals
+      var negative = new ArrayList<Term>(c.negativeSize - 1);
+      for (var i = 0; i < c.negativeSize; i++) if (i != ci) negative.add(cliterals[i]);
 
-    var cliterals = new Term[c.literals.length];
-    for (var i = 0; i < c.literals.length; i++) cliterals[i] = c.literals[i].replace(map);
-    if (notMaximal(cliterals, c.negativeSize, ci, new Equation(c0m, c1m))) return;
+      // Positive literals
+      var positive = new ArrayList<Term>(c.positiveSize());
+      //noinspection ManualArrayToCollectionCopy
+      for (var i = c.negativeSize; i < cliterals.length; i++) positive.add(cliterals[i]);
 
-    // Negative literals
-    var negative = new ArrayList<Term>(c.negativeSize - 1);
-    for (var i = 0; i < c.negativeSize; i++) if (i != ci) negative.add(cliterals[i]);
+      // Make new clause
+      add(new Clause(negative, positive));
+    }
 
-    // Positive literals
-    var positive = new ArrayList<Term>(c.positiveSize());
-    //noinspection ManualArrayToCollectionCopy
-    for (var i = c.negativeSize; i < cliterals.length; i++) positive.add(cliterals[i]);
+    // For each negative equation, or just the selected one
+    private void resolve() {
+      for (ci = 0; ci < c.negativeSize; ci++) {
+        var e = new Equation(c.literals[ci]);
+        if (c.selected >= 0 ? ci != c.selected : notMaximal(c.literals, c.negativeSize, ci, e))
+          continue;
 
-    // Make new clause
-    clause(new Clause(negative, positive));
-  }
-
-  // For each negative equation
-  private void resolve() {
-    for (ci = 0; ci < c.negativeSize; ci++) {
-      var e = new Equation(c.literals[ci]);
-      if (notMaximal(c.literals, c.negativeSize, ci, e)) continue;
+        c0 = e.left;
+        c1 = e.right;
+        resolvem();
+      }
+    }
 
-      c0 = e.left;
-      c1 = e.right;
-      resolvem();
+    /*
+    Equality factoring
+      c | c0 = c1 | c2 = c3
+    and
+      map = unify(c0, c2)
+    ->
+      (c | c0 = c1 | c1 != c3)/map
+    */
+
+    // unify, substitute and make new clause
+    private void factorm() {
+      // in tests, the unification check failed more often than the equatable
+      // check,  so putting it first may save a little time
+      map.clear();
+      if (!c0.unify(map, c2)) return;
+
+      // the test for c1=c3 being a valid equation, would strictly speaking fail if c1=True and c3
+      // is some other predicate.
+      // (That would be a valid equation, just the wrong way round; in superposition calculus,
+      // that means the equation should be turned  the right way round, not discarded.)
+      // But if c1=True, c0 is a predicate
+      // that is not True (or the clause would have been a tautology, filtered out earlier), so c2
+      // is
+      // a
+      // predicate that is not True (or unification would have failed; there is no such thing as a
+      // Boolean
+      // variable in first-order logic), so c3
+      // can only be True (because an equation with a predicate other than True on one side,
+      // can only have True on the other)
+      assert !(c1 == Term.TRUE && c3 != Term.TRUE);
+
+      // If these two terms are not equatable (for which the types must match, and predicates can
+      // only
+      // be equated with True),
+      // substituting terms for variables would not make them become so.
+      if (!Equation.equatable(c1, c3)) return;
+
+      var c0m = c0.replace(map);
+      var c1m = c1.replace(map);
+
+      // the superposition calculus condition on the orienting of equations,
+      // actually applies after the map. We already applied it before, to avoid spending time
+      // on equations that are definitely the wrong orientation to begin with,
+      // but in some cases, equations that were unordered, become ordered after substitution,
+      // and ordered the wrong way, so rechecking the orientation,
+      // suppresses some unnecessary inferences
+      if (order.compare(c0m, c1m) == PartialOrder.LESS) return;
+
+      // ditto for the condition on equation being maximal within clause
+      var cliterals = new Term[c.literals.length];
+      for (var i = 0; i < c.literals.length; i++) cliterals[i] = c.literals[i].replace(map);
+      if (notMaximal(cliterals, c.negativeSize, ci, new Equation(c0m, c1m))) return;
+
+      // Negative literals
+      var negative = new ArrayList<Term>(c.negativeSize + 1);
+      //noinspection ManualArrayToCollectionCopy
+      for (var i = 0; i < c.negativeSize; i++) negative.add(cliterals[i]);
+      negative.add(new Equation(c1m, c3.replace(map)).term());
+
+      // Positive literals
+      var positive = new ArrayList<Term>(c.positiveSize() - 1);
+      for (var i = c.negativeSize; i < cliterals.length; i++)
+        if (i != cj) positive.add(cliterals[i]);
+
+      // Make new clause
+      add(new Clause(negative, positive));
     }
-  }
 
-  /*
-  Equality factoring
-    c | c0 = c1 | c2 = c3
-  and
-    map = unify(c0, c2)
-  ->
-    (c | c0 = c1 | c1 != c3)/map
-  */
-
-  // unify, substitute and make new clause
-  private void factorm() {
-    // in tests, the unification check failed more often than the equatable
-    // check,  so putting it first may save a little time
-    var map = c0.unify(FMap.EMPTY, c2);
-    if (map == null) return;
-
-    // the test for c1=c3 being a valid equation, would strictly speaking fail if c1=True and c3
-    // is some other predicate.
-    // (That would be a valid equation, just the wrong way round; in superposition calculus,
-    // that means the equation should be turned  the right way round, not discarded.)
-    // But if c1=True, c0 is a predicate
-    // that is not True (or the clause would have been a tautology, filtered out earlier), so c2 is
-    // a
-    // predicate that is not True (or unification would have failed; there is no such thing as a
-    // Boolean
-    // variable in first-order logic), so c3
-    // can only be True (because an equation with a predicate other than True on one side,
-    // can only have True on the other)
-    assert !(c1 == Term.TRUE && c3 != Term.TRUE);
-
-    // If these two terms are not equatable (for which the types must match, and predicates can only
-    // be equated with True),
-    // substituting terms for variables would not make them become so.
-    if (!Equation.equatable(c1, c3)) return;
-
-    var c0m = c0.replace(map);
-    var c1m = c1.replace(map);
-
-    // the superposition calculus condition on the orienting of equations,
-    // actually applies after the map. We already applied it before, to avoid spending time
-    // on equations that are definitely the wrong orientation to begin with,
-    // but in some cases, equations that were unordered, become ordered after substitution,
-    // and ordered the wrong way, so rechecking the orientation,
-    // suppresses some unnecessary inferences
-    if (order.compare(c0m, c1m) == PartialOrder.LESS) return;
-
-    // ditto for the condition on equation being maximal within clause
-    var cliterals = new Term[c.literals.length];
-    for (var i = 0; i < c.literals.length; i++) cliterals[i] = c.literals[i].replace(map);
-    if (notMaximal(cliterals, c.negativeSize, ci, new Equation(c0m, c1m))) return;
-
-    // Negative literals
-    var negative = new ArrayList<Term>(c.negativeSize + 1);
-    //noinspection ManualArrayToCollectionCopy
-    for (var i = 0; i < c.negativeSize; i++) negative.add(cliterals[i]);
-    negative.add(new Equation(c1m, c3.replace(map)).term());
+    // For each positive equation (both directions) again
+    private void factorj() {
+      for (cj = c.negativeSize; cj < c.literals.length; cj++) {
+        if (cj == ci) continue;
+        var e = new Equation(c.literals[cj]);
 
-    // Positive literals
-    var positive = new ArrayList<Term>(c.positiveSize() - 1);
-    for (var i = c.negativeSize; i < cliterals.length; i++) if (i != cj) positive.add(cliterals[i]);
+        c2 = e.left;
+        c3 = e.right;
+        factorm();
 
-    // Make new clause
-    clause(new Clause(negative, positive));
-  }
+        c2 = e.right;
+        c3 = e.left;
+        factorm();
+      }
+    }
 
-  // For each positive equation (both directions) again
-  private void factorj() {
-    for (cj = c.negativeSize; cj < c.literals.length; cj++) {
-      if (cj == ci) continue;
-      var e = new Equation(c.literals[cj]);
+    // For each positive equation (both directions), unless a literal is selected
+    private void factor() {
+      if (c.selected >= 0) return;
+      for (ci = c.negativeSize; ci < c.literals.length; ci++) {
+        var e = new Equation(c.literals[ci]);
+        if (notMaximal(c.literals, c.negativeSize, ci, e)) continue;
 
-      c2 = e.left;
-      c3 = e.right;
-      factorm();
+        assert order.compare(e.left, e.right) != PartialOrder.LESS;
+        c0 = e.left;
+        c1 = e.right;
+        factorj();
 
-      c2 = e.right;
-      c3 = e.left;
-      factorm();
+        if (order.compare(e.right, e.left) != PartialOrder.LESS) {
+          c0 = e.right;
+          c1 = e.left;
+          factorj();
+        }
+      }
     }
-  }
 
-  // For each positive equation (both directions)
-  private void factor() {
-    for (ci = c.negativeSize; ci < c.literals.length; ci++) {
-      var e = new Equation(c.literals[ci]);
-      if (notMaximal(c.literals, c.negativeSize, ci, e)) continue;
+    /*
+    Superposition
+      c | c0 = c1, d | d0(a) ?= d1
+    and
+      map = unify(c0, a)
+      a not variable
+    ->
+      (c | d | d0(c1) ?= d1)/map
+    */
+
+    // unify, substitute and make new clause
+    private void spm(Term a) {
+      map.clear();
+      if (!c0.unify(map, a)) return;
+
+      var d0c1 = d0.splice(position, 0, c1);
+
+      // the test for d0c1=d1 being a valid equation, would strictly speaking fail if d0c1=True and
+      // d1
+      // is some other predicate. But if d0c1=True, c1=True, c0 is a predicate
+      // that is not True (or the clause would have been a tautology, filtered out earlier), so
+      // d0(a)
+      // is a
+      // predicate that is not True (or unification would have failed; there is no such thing as a
+      // Boolean
+      // variable in first-order logic), so d1
+      // can only be True (because an equation with a predicate other than True on one side,
+      // can only have True on the other)
+      assert !(d0c1 == Term.TRUE && d1 != Term.TRUE);
+      if (!Equation.equatable(d0c1, d1)) return;
+
+      var c0m = c0.replace(map);
+      var c1m = c1.replace(map);
+      var d0m = d0.replace(map);
+      var d1m = d1.replace(map);
+
+      if (order.compare(c0m, c1m) == PartialOrder.LESS) return;
+      if (order.compare(d0m, d1m) == PartialOrder.LESS) return;
+
+      var cliterals = new Term[c.literals.length];
+      for (var i = 0; i < c.literals.length; i++) cliterals[i] = c.literals[i].replace(map);
+      if (notStrictlyMaximal(cliterals, c.negativeSize, ci, new Equation(c0m, c1m))) return;
+
+      var dliterals = new Term[d.literals.length];
+      for (var i = 0; i < d.literals.length; i++) dliterals[i] = d.literals[i].replace(map);
+      if (d.selected < 0 && notModeMaximal(dliterals, d.negativeSize, di, new Equation(d0m, d1m)))
+        return;
 
-      assert order.compare(e.left, e.right) != PartialOrder.LESS;
-      c0 = e.left;
-      c1 = e.right;
-      factorj();
+      // Negative literals
+      var negative = new ArrayList<Term>(c.negativeSize + d.negativeSize);
+      //noinspection ManualArrayToCollectionCopy
+      for (var i = 0; i < c.negativeSize; i++) negative.add(cliterals[i]);
+      for (var i = 0; i < d.negativeSize; i++) if (i != di) negative.add(dliterals[i]);
 
-      if (order.compare(e.right, e.left) != PartialOrder.LESS) {
-        c0 = e.right;
-        c1 = e.left;
-        factorj();
-      }
+      // Positive literals
+      var positive = new ArrayList<Term>(c.positiveSize() + d.positiveSize() - 1);
+      for (var i = c.negativeSize; i < cliterals.length; i++)
+        if (i != ci) positive.add(cliterals[i]);
+      for (var i = d.negativeSize; i < dliterals.length; i++)
+        if (i != di) positive.add(dliterals[i]);
+
+      // Negative and positive superposition
+      (di < d.negativeSize ? negative : positive).add(new Equation(d0c1.replace(map), d1m).term());
+
+      // Make new clause
+      add(new Clause(negative, positive));
     }
-  }
 
-  /*
-  Superposition
-    c | c0 = c1, d | d0(a) ?= d1
-  and
-    map = unify(c0, a)
-    a not variable
-  ->
-    (c | d | d0(c1) ?= d1)/map
-  */
-
-  // unify, substitute and make new clause
-  private void spm(Term a) {
-    var map = c0.unify(FMap.EMPTY, a);
-    if (map == null) return;
-
-    var d0c1 = d0.splice(position, 0, c1);
-
-    // the test for d0c1=d1 being a valid equation, would strictly speaking fail if d0c1=True and d1
-    // is some other predicate. But if d0c1=True, c1=True, c0 is a predicate
-    // that is not True (or the clause would have been a tautology, filtered out earlier), so d0(a)
-    // is a
-    // predicate that is not True (or unification would have failed; there is no such thing as a
-    // Boolean
-    // variable in first-order logic), so d1
-    // can only be True (because an equation with a predicate other than True on one side,
-    // can only have True on the other)
-    assert !(d0c1 == Term.TRUE && d1 != Term.TRUE);
-    if (!Equation.equatable(d0c1, d1)) return;
-
-    var c0m = c0.replace(map);
-    var c1m = c1.replace(map);
-    var d0m = d0.replace(map);
-    var d1m = d1.replace(map);
-
-    if (order.compare(c0m, c1m) == PartialOrder.LESS) return;
-    if (order.compare(d0m, d1m) == PartialOrder.LESS) return;
-
-    var cliterals = new Term[c.literals.length];
-    for (var i = 0; i < c.literals.length; i++) cliterals[i] = c.literals[i].replace(map);
-    if (notStrictlyMaximal(cliterals, c.negativeSize, ci, new Equation(c0m, c1m))) return;
-
-    var dliterals = new Term[d.literals.length];
-    for (var i = 0; i < d.literals.length; i++) dliterals[i] = d.literals[i].replace(map);
-    if (notModeMaximal(dliterals, d.negativeSize, di, new Equation(d0m, d1m))) return;
-
-    // Negative literals
-    var negative = new ArrayList<Term>(c.negativeSize + d.negativeSize);
-    //noinspection ManualArrayToCollectionCopy
-    for (var i = 0; i < c.negativeSize; i++) negative.add(cliterals[i]);
-    for (var i = 0; i < d.negativeSize; i++) if (i != di) negative.add(dliterals[i]);
+    void sp(Candidate candidate) {
+      var from = candidate.from;
+      c = from.c;
+      ci = from.ci;
+      c0 = from.c0;
+      c1 = from.c1;
+
+      var into = candidate.into;
+      d = into.d;
+      di = into.di;
+      d0 = into.d0;
+      d1 = into.d1;
+      position = into.position;
+      spm(into.a);
+    }
+  }
 
-    // Positive literals
-    var positive = new ArrayList<Term>(c.positiveSize() + d.positiveSize() - 1);
-    for (var i = c.negativeSize; i < cliterals.length; i++) if (i != ci) positive.add(cliterals[i]);
-    for (var i = d.negativeSize; i < dliterals.length; i++) if (i != di) positive.add(dliterals[i]);
+  // For each positive equation in c (both directions), unless a literal is selected
+  private List<From> froms(long number, Clause c) {
+    var v = new ArrayList<From>();
+    if (c.selected >= 0) return v;
+    for (var ci = c.negativeSize; ci < c.literals.length; ci++) {
+      var e = new Equation(c.literals[ci]);
+      if (notStrictlyMaximal(c.literals, c.negativeSize, ci, e)) continue;
 
-    // Negative and positive superposition
-    (di < d.negativeSize ? negative : positive).add(new Equation(d0c1.replace(map), d1m).term());
+      assert order.compare(e.left, e.right) != PartialOrder.LESS;
+      v.add(new From(number, v.size(), c, ci, e.left, e.right));
 
-    // Make new clause
-    clause(new Clause(negative, positive));
+      if (order.compare(e.right, e.left) != PartialOrder.LESS)
+        v.add(new From(number, v.size(), c, ci, e.right, e.left));
+    }
+    return v;
   }
 
   // recur into subterms
-  private void spr(Term a) {
+  private static void intos(
+      long number,
+      Clause d,
+      int di,
+      Term d0,
+      Term d1,
+      List<Integer> position,
+      Term a,
+      List<Into> v) {
     if (a instanceof Var) return;
-    spm(a);
+    v.add(new Into(number, v.size(), d, di, d0, d1, List.copyOf(position), a));
     var n = a.size();
-    // TODO: start at 1 for call?
-    for (var i = 0; i < n; i++) {
+    // the function of a call is not a term that could unify with anything
+    for (var i = a.tag() == Tag.CALL ? 1 : 0; i < n; i++) {
       position.add(i);
-      spr(a.get(i));
+      intos(number, d, di, d0, d1, position, a.get(i), v);
       position.remove(position.size() - 1);
     }
   }
 
-  // For each equation in d (both directions)
-  private void spd() {
-    assert position.isEmpty();
-    for (di = 0; di < d.literals.length; di++) {
+  // For each equation in d (both directions), or just the selected one
+  private List<Into> intos(long number, Clause d) {
+    var v = new ArrayList<Into>();
+    var position = new ArrayList<Integer>();
+    for (var di = 0; di < d.literals.length; di++) {
       var e = new Equation(d.literals[di]);
-      if (notModeMaximal(d.literals, d.negativeSize, di, e)) continue;
+      if (d.selected >= 0 ? di != d.selected : notModeMaximal(d.literals, d.negativeSize, di, e))
+        continue;
 
       assert order.compare(e.left, e.right) != PartialOrder.LESS;
-      d0 = e.left;
-      d1 = e.right;
-      spr(d0);
-
-      if (order.compare(e.right, e.left) != PartialOrder.LESS) {
-        d0 = e.right;
-        d1 = e.left;
-        spr(d0);
+      intos(number, d, di, e.left, e.right, position, e.left, v);
+
+      if (order.compare(e.right, e.left) != PartialOrder.LESS)
+        intos(number, d, di, e.right, e.left, position, e.right, v);
+    }
+    return v;
+  }
+
+  // A positive unit equation can be used to rewrite, in whichever directions the order allows
+  private List<Rule> rules(Clause c) {
+    var v = new ArrayList<Rule>();
+    if (c.literals.length != 1 || c.negativeSize != 0) return v;
+
+    // The rules get their own variables, which cannot occur in any clause they rewrite
+    var e = new Equation(c.renameVars().literals[0]);
+    switch (order.compare(e.left, e.right)) {
+      case GREATER -> v.add(new Rule(e.left, e.right, true, c.splits));
+      case LESS -> v.add(new Rule(e.right, e.left, true, c.splits));
+      case UNORDERED -> {
+        if (!(e.left instanceof Var)) v.add(new Rule(e.left, e.right, false, c.splits));
+        if (!(e.right instanceof Var)) v.add(new Rule(e.right, e.left, false, c.splits));
       }
     }
+    return v;
   }
 
-  // For each positive equation in c (both directions)
-  private void sp() {
-    for (ci = c.negativeSize; ci < c.literals.length; ci++) {
-      var e = new Equation(c.literals[ci]);
-      if (notStrictlyMaximal(c.literals, c.negativeSize, ci, e)) continue;
+  // Rewrite a with one step at the top, or return null if no rule applies. If a is a side of a
+  // positive literal whose other side is t, the result must also be smaller than t; otherwise the
+  // unit equation would not be smaller than the clause being rewritten, and rewriting would lose
+  // completeness. The clause being rewritten depends on the splits
+  private Term rewriteStep(Term a, Term t, int[] splits) {
+    var candidates = new ArrayList<Rule>();
+    rules.forGeneralizations(a, candidates::add);
+    for (var rule : candidates) {
+      if (!Clause.subset(rule.splits, splits)) continue;
+      rewriteMap.clear();
+      if (!rule.l.match(rewriteMap, a)) continue;
+      var b = rule.r.replace(rewriteMap);
+      if (!rule.oriented && order.compare(a, b) != PartialOrder.GREATER) continue;
+      if (t != null && order.compare(b, t) != PartialOrder.LESS) continue;
+      return b;
+    }
+    return null;
+  }
 
-      assert order.compare(e.left, e.right) != PartialOrder.LESS;
-      c0 = e.left;
-      c1 = e.right;
-      spd();
-
-      if (order.compare(e.right, e.left) != PartialOrder.LESS) {
-        c0 = e.right;
-        c1 = e.left;
-        spd();
+  // Rewrite a to normal form, innermost first
+  private Term rewrite(Term a, Term t, int[] splits) {
+    if (a instanceof Var || a.tag() == Tag.FUNC) return a;
+    a = a.map(b -> rewrite(b, null, splits));
+    var b = rewriteStep(a, t, splits);
+    if (b == null) return a;
+    return rewrite(b, t, splits);
+  }
+
+  // Demodulation: rewrite c with the active unit equations, returning c itself if nothing changed
+  private Clause simplify(Clause c) {
+    if (activeRules.isEmpty()) return c;
+    Term[] v = null;
+    for (var i = 0; i < c.literals.length; i++) {
+      var e = new Equation(c.literals[i]);
+      Term left, right;
+      if (i < c.negativeSize) {
+        left = rewrite(e.left, null, c.splits);
+        right = rewrite(e.right, null, c.splits);
+      } else {
+        left = rewrite(e.left, e.right, c.splits);
+        right = rewrite(e.right, left, c.splits);
       }
+      if (left == e.left && right == e.right) continue;
+      if (v == null) v = c.literals.clone();
+      v[i] = new Equation(left, right).term();
+    }
+    if (v == null) return c;
+    Stats.inc("demodulated clauses");
+
+    var negative = new ArrayList<Term>(c.negativeSize);
+    //noinspection ManualArrayToCollectionCopy
+    for (var i = 0; i < c.negativeSize; i++) negative.add(v[i]);
+    var positive = new ArrayList<Term>(c.positiveSize());
+    //noinspection ManualArrayToCollectionCopy
+    for (var i = c.negativeSize; i < v.length; i++) positive.add(v[i]);
+    var c1 = new Clause(negative, positive);
+    c1.goal = c.goal;
+    c1.birth = c.birth;
+    c1.splits = c.splits;
+    return c1;
+  }
+
+  // Does a have a subterm that is an instance of the left side of one of the rules?
+  private boolean reducible(Term a, List<Rule> v) {
+    if (a instanceof Var) return false;
+    for (var rule : v) {
+      rewriteMap.clear();
+      if (rule.l.match(rewriteMap, a)) return true;
     }
+    for (var b : a) if (reducible(b, v)) return true;
+    return false;
+  }
+
+  // Backward demodulation: when a unit equation becomes active, active clauses it can rewrite are
+  // taken out, and go back to passive in simplified form
+  private void simplifyActive(Clause g) {
+    var v = activeRules.get(g);
+    if (v == null) return;
+    for (var d : new ArrayList<>(active)) {
+      if (d == g || !Clause.subset(g.splits, d.splits)) continue;
+      var reducible = false;
+      for (var a : d.literals) if (reducible(a, v)) reducible = true;
+      if (!reducible) continue;
+
+      var d1 = simplify(d);
+      if (d1 == d) continue;
+      subsumption.remove(d);
+      deactivate(d);
+      clause(d1);
+    }
+  }
+
+  private void activate(Clause c) {
+    var number = activated++;
+    active.add(c);
+
+    var v = froms(number, c);
+    for (var from : v) froms.add(from.c0, from);
+    activeFroms.put(c, v);
+
+    var w = intos(number, c);
+    for (var into : w) intos.add(into.a, into);
+    activeIntos.put(c, w);
+
+    var u = rules(c);
+    if (u.isEmpty()) return;
+    for (var rule : u) rules.add(rule.l, rule);
+    activeRules.put(c, u);
+  }
+
+  private void deactivate(Clause c) {
+    active.remove(c);
+    for (var from : activeFroms.remove(c)) froms.remove(from.c0, from);
+    for (var into : activeIntos.remove(c)) intos.remove(into.a, into);
+    var u = activeRules.remove(c);
+    if (u != null) for (var rule : u) rules.remove(rule.l, rule);
+  }
+
+  // Does the model choose every part the clause depends on?
+  private boolean chosen(Clause c) {
+    for (var x : c.splits) if (!sat.value(x)) return false;
+    return true;
   }
 
-  private Superposition(List<Clause> clauses, long steps) {
-    order = new KnuthBendixOrder(clauses);
-    List<Clause> active = new ArrayList<>();
-    var subsumption = new Subsumption();
+  // Replace a clause of more than one part with the parts, each depending on the variable that
+  // names it, and tell the SAT solver that, where the clause holds, so does one of them
+  private boolean split(Clause c) {
+    var v = c.components();
+    if (v.size() < 2) return false;
+    Stats.inc("split clauses");
+    var literals = new int[c.splits.length + v.size()];
+    var i = 0;
+    for (var x : c.splits) literals[i++] = -x;
+    for (var d : v) {
+      // Parts that are the same up to renaming of variables get the same name
+      var key = Arrays.toString(codec.encode(d));
+      var x = components.get(key);
+      if (x == null) {
+        x = components.size() + 1;
+        components.put(key, x);
+        d.goal = c.goal;
+        d.splits = new int[] {x};
+        clause(d);
+      }
+      literals[i++] = x;
+    }
+    sat.add(literals);
+    return true;
+  }
+
+  // Find a model of the SAT clauses, returning false if there is none. Active clauses that depend
+  // on parts it does not choose are locked, and locked clauses it chooses go back to passive
+  private boolean model() {
+    Stats.inc("avatar models");
+    if (!sat.solve(Long.MAX_VALUE)) return false;
+    for (var c : new ArrayList<>(active))
+      if (!chosen(c)) {
+        subsumption.remove(c);
+        deactivate(c);
+        locked.add(c);
+      }
+    var v = new ArrayList<Clause>();
+    for (var c : locked)
+      if (chosen(c)) clause(c);
+      else v.add(c);
+    locked.clear();
+    locked.addAll(v);
+    return true;
+  }
+
+  // Make the clause from a superposition inference that was deferred, unless either parent has
+  // since stopped being active, in which case the inference is redundant
+  private Clause make(Candidate candidate, Clause given, Clause other, long birth) {
+    if (!active.contains(given) || !active.contains(other)) return null;
+    var inference = lazyInference;
+    inference.out.clear();
+    inference.sp(candidate);
+    if (inference.out.isEmpty()) return null;
+    var c = simplify(inference.out.get(0));
+    if (c.isTrue()) return null;
+    c.birth = birth;
+    return c;
+  }
+
+  // Queue a superposition inference without making the clause. Only unification is checked now;
+  // the rest is left until the clause is made, which for most inferences is never. The weight is
+  // estimated from the parents as if no variables were bound: c without the literal c0 = c1,
+  // plus d with a replaced by c1
+  private void defer(Candidate candidate, Clause g) {
+    var from = candidate.from;
+    var into = candidate.into;
+    lazyMap.clear();
+    if (!from.c0.unify(lazyMap, into.a)) return;
+    var c = from.c;
+    var d = into.d;
+    var weight =
+        c.weight
+            + d.weight
+            - 2
+            - c.literals[from.ci].symbolCount()
+            - into.a.symbolCount()
+            + from.c1.symbolCount();
+    var other = candidate.reversed ? d : c;
+    var birth = iteration;
+    passive.add(Math.toIntExact(weight), c.goal || d.goal, () -> make(candidate, g, other, birth));
+  }
+
+  // Superposition between the given clause and all active clauses (including itself). g1 is the
+  // given clause g with variables renamed
+  private void sp(Clause g, Clause g1) {
+    var candidates = new ArrayList<Candidate>();
+
+    // Active clause is c, given clause is d
+    for (var into : intos(0, g1))
+      froms.forUnifiable(
+          into.a, from -> candidates.add(new Candidate(from.number, false, from, into)));
+
+    // Given clause is c, active clause is d
+    for (var from : froms(0, g1))
+      intos.forUnifiable(
+          from.c0, into -> candidates.add(new Candidate(into.number, true, from, into)));
+
+    candidates.sort(CANDIDATE_ORDER);
+    if (lazy) {
+      for (var candidate : candidates) defer(candidate, g);
+      return;
+    }
+    if (pool == null || candidates.size() < MIN_CHUNK * 2) {
+      var inference = new Inference();
+      for (var candidate : candidates) inference.sp(candidate);
+      for (var c : inference.out) clause(c);
+      return;
+    }
+
+    // Each chunk of candidates runs in its own inference context. Results are added in chunk
+    // order, so the passive queue gets the same clauses in the same order as with one thread
+    var n = candidates.size();
+    var size = Math.max(MIN_CHUNK, n / (pool.getParallelism() * CHUNKS_PER_THREAD) + 1);
+    var tasks = new ArrayList<ForkJoinTask<List<Clause>>>();
+    for (var i = 0; i < n; i += size) {
+      var chunk = candidates.subList(i, Math.min(i + size, n));
+      tasks.add(
+          pool.submit(
+              () -> {
+                var inference = new Inference();
+                for (var candidate : chunk) inference.sp(candidate);
+                return inference.out;
+              }));
+    }
+    for (var task : tasks) for (var c : task.join()) clause(c);
+  }
+
+  private Superposition(List<Clause> clauses, Strategy strategy, long steps) {
+    order = new KnuthBendixOrder(clauses, strategy.precedence);
+    lazy = strategy.lazy;
+    selection = strategy.selection;
+    passive =
+        new Passive(
+            strategy.ageRatio, strategy.weightRatio, strategy.goalRatio, strategy.passiveLimit);
+    pool = strategy.threads > 1 ? new ForkJoinPool(strategy.threads) : null;
+    sat = strategy.avatar ? new Cdcl() : null;
+    try {
+      result = search(clauses, steps);
+    } finally {
+      if (pool != null) pool.shutdownNow();
+      passive.close();
+    }
+  }
+
+  private boolean search(List<Clause> clauses, long steps) {
     for (var c : clauses) {
       // add the initial clauses to the passive queue
       clause(c);
@@ -354,13 +801,32 @@ public final class Superposition {
     while (!passive.isEmpty()) {
       if (steps-- == 0) throw new Fail();
 
-      // Given clause.
-      var g = passive.poll();
+      // Another search, such as a strategy running alongside in a portfolio, may have made this one
+      // unnecessary
+      if (Thread.currentThread().isInterrupted()) throw new Fail();
+
+      // Given clause. Rules may have been added since it was generated
+      iteration++;
+      var polled = passive.poll();
+
+      // Recipes for all the remaining clauses may have declined
+      if (polled == null) break;
+      Stats.inc("given clauses");
+      var g = simplify(polled);
+      if (g.isTrue()) continue;
+      if (sat != null && !chosen(g)) {
+        locked.add(g);
+        continue;
+      }
 
-      // Solved
+      // Solved, unless the contradiction depends on splits, in which case they cannot all hold
       if (g.isFalse()) {
-        result = false;
-        return;
+        if (g.splits.length == 0) return false;
+        var v = new int[g.splits.length];
+        for (var i = 0; i < v.length; i++) v[i] = -g.splits[i];
+        sat.add(v);
+        if (!model()) return false;
+        continue;
       }
 
       // the time to put all the equations in this clause in the right order is now,
@@ -373,6 +839,7 @@ public final class Superposition {
         var y = a.get(1);
         if (order.compare(x, y) == PartialOrder.LESS) g.literals[i] = Term.of(Tag.EQUALS, y, x);
       }
+      g.selected = selection.select(g, order);
 
       // Rename variables, because subsumption and superposition both assume
       // clauses have disjoint variable names
@@ -381,33 +848,37 @@ public final class Superposition {
       // Discount loop, which only subsumes against active clauses, performed slightly better in
       // tests.
       // The alternative Otter loop would also subsume against passive clauses
-      if (subsumption.subsumesForward(active, g1)) continue;
-      active = subsumption.subsumeBackward(g1, active);
+      if (subsumption.subsumesForward(g1)) continue;
+      if (sat != null && split(g)) {
+        if (!model()) return false;
+        continue;
+      }
+      for (var ac : subsumption.subsumeBackward(g1)) deactivate(ac);
 
       // Infer from one clause
-      c = g;
-      resolve();
-      factor();
+      var inference = new Inference();
+      inference.c = g;
+      inference.resolve();
+      inference.factor();
+      for (var c : inference.out) clause(c);
 
       // Sometimes need to match g with itself
-      active.add(g);
+      subsumption.add(g);
+      activate(g);
+      simplifyActive(g);
 
       // Infer from two clauses
-      for (var ac : active) {
-        c = ac;
-        d = g1;
-        sp();
-
-        c = g1;
-        d = ac;
-        sp();
-      }
+      sp(g, g1);
     }
     if (!complete) throw new Fail();
-    result = true;
+    return true;
+  }
+
+  public static boolean sat(List<Clause> clauses, Strategy strategy, long steps) {
+    return new Superposition(clauses, strategy, steps).result;
   }
 
   public static boolean sat(List<Clause> clauses, long steps) {
-    return new Superposition(clauses, steps).result;
+    return sat(clauses, new Strategy(), steps);
   }
 }
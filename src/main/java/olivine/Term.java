@@ -1,5 +1,6 @@
 package olivine;
 
+import java.lang.ref.WeakReference;
 import java.math.BigInteger;
 import java.util.*;
 import java.util.function.Consumer;
@@ -8,8 +9,9 @@ import java.util.function.Function;
 public abstract class Term implements Iterable<Term> {
   public FMap unify(FMap map, Term b) {
     assert map != null;
-    // TODO: optimize equals check?
-    if (equals(b)) return map;
+    if (this == b) return map;
+    // Terms are interned, so different ground terms cannot be equal
+    if (isGround() && b.isGround()) return null;
     if (!type().equals(b.type())) return null;
 
     if (b instanceof Var b1) return b1.unify(map, this);
@@ -28,13 +30,15 @@ public abstract class Term implements Iterable<Term> {
   }
 
   public boolean contains(FMap map, Var b) {
+    if (isGround()) return false;
     for (var a : this) if (a.contains(map, b)) return true;
     return false;
   }
 
   public FMap match(FMap map, Term b) {
     assert map != null;
-    if (equals(b)) return map;
+    if (this == b) return map;
+    if (isGround()) return null;
     if (!type().equals(b.type())) return null;
 
     if (tag() != b.tag()) return null;
@@ -49,6 +53,44 @@ public abstract class Term implements Iterable<Term> {
     return map;
   }
 
+  // Equivalents of the above, that bind variables in a mutable substitution. On failure, some
+  // bindings may already have been made; the caller is expected to undo to a mark
+  public boolean unify(Substitution map, Term b) {
+    if (this == b) return true;
+    if (isGround() && b.isGround()) return false;
+    if (!type().equals(b.type())) return false;
+
+    if (b instanceof Var b1) return b1.unify(map, this);
+
+    if (tag() != b.tag()) return false;
+    var n = size();
+    if (n == 0) return false;
+
+    if (n != b.size()) return false;
+    for (var i = 0; i < n; i++) if (!get(i).unify(map, b.get(i))) return false;
+    return true;
+  }
+
+  public boolean contains(Substitution map, Var b) {
+    if (isGround()) return false;
+    for (var a : this) if (a.contains(map, b)) return true;
+    return false;
+  }
+
+  public boolean match(Substitution map, Term b) {
+    if (this == b) return true;
+    if (isGround()) return false;
+    if (!type().equals(b.type())) return false;
+
+    if (tag() != b.tag()) return false;
+    var n = size();
+    if (n == 0) return false;
+
+    if (n != b.size()) return false;
+    for (var i = 0; i < n; i++) if (!get(i).match(map, b.get(i))) return false;
+    return true;
+  }
+
   public final List<Term> flatten(Tag tag) {
     // optimize for the common special  case
     if (tag() != tag) return Collections.singletonList(this);
@@ -280,8 +322,35 @@ public abstract class Term implements Iterable<Term> {
         }
       };
 
+  // Terms are hash-consed: every compound or numeric term is looked up in this table when it is
+  // made, so structurally equal terms are the same object. The table holds its terms weakly, so
+  // those no longer referenced by any clause can still be collected. Threads generating inferences
+  // make terms at the same time, so the table is split by hash into parts with a lock each
+  private static final int BANK_PARTS = 64;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final Map<Term, WeakReference<Term>>[] bank = new Map[BANK_PARTS];
+
+  static {
+    for (var i = 0; i < BANK_PARTS; i++) bank[i] = new WeakHashMap<>();
+  }
+
+  private static Term intern(Term a) {
+    var h = a.hashCode();
+    var part = bank[(h ^ h >>> 16) & BANK_PARTS - 1];
+    synchronized (part) {
+      var r = part.get(a);
+      if (r != null) {
+        var b = r.get();
+        if (b != null) return b;
+      }
+      part.put(a, new WeakReference<>(a));
+      return a;
+    }
+  }
+
   public static Term of(Tag tag, Term a) {
-    return new Term1(tag, a);
+    return intern(new Term1(tag, a));
   }
 
   @Override
@@ -302,41 +371,41 @@ public abstract class Term implements Iterable<Term> {
   }
 
   public static Term of(Tag tag, Term a, Term b) {
-    return new Term2(tag, a, b);
+    return intern(new Term2(tag, a, b));
   }
 
   public static Term of(Tag tag, List<Term> v) {
     return switch (v.size()) {
       case 0 -> throw new IllegalArgumentException(tag.toString());
-      case 1 -> new Term1(tag, v.get(0));
-      case 2 -> new Term2(tag, v.get(0), v.get(1));
-      default -> new Terms(tag, v.toArray(new Term[0]));
+      case 1 -> of(tag, v.get(0));
+      case 2 -> of(tag, v.get(0), v.get(1));
+      default -> intern(new Terms(tag, v.toArray(new Term[0])));
     };
   }
 
   public static Term of(Tag tag, Term... v) {
     return switch (v.length) {
       case 0 -> throw new IllegalArgumentException(tag.toString());
-      case 1 -> new Term1(tag, v[0]);
-      case 2 -> new Term2(tag, v[0], v[1]);
-      default -> new Terms(tag, v);
+      case 1 -> of(tag, v[0]);
+      case 2 -> of(tag, v[0], v[1]);
+      default -> intern(new Terms(tag, v));
     };
   }
 
   public static Term cast(Type type, Term a) {
-    return new Cast(type, a);
+    return intern(new Cast(type, a));
   }
 
   public static Term of(long value) {
-    return new IntegerTerm(BigInteger.valueOf(value));
+    return intern(new IntegerTerm(BigInteger.valueOf(value)));
   }
 
   public static Term of(BigInteger value) {
-    return new IntegerTerm(value);
+    return intern(new IntegerTerm(value));
   }
 
   public static Term of(Type type, BigRational value) {
-    return new RationalTerm(type, value);
+    return intern(new RationalTerm(type, value));
   }
 
   public BigInteger integerValue() {
@@ -374,7 +443,7 @@ public abstract class Term implements Iterable<Term> {
 
     @Override
     public int hashCode() {
-      return Objects.hash(value);
+      return value.hashCode();
     }
 
     @Override
@@ -423,35 +492,92 @@ public abstract class Term implements Iterable<Term> {
       if (this == o) return true;
       if (o == null || getClass() != o.getClass()) return false;
       RationalTerm that = (RationalTerm) o;
-      return value.equals(that.value);
+      return type == that.type && value.equals(that.value);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(value);
+      return Objects.hash(type, value);
     }
   }
 
-  private static final class Cast extends Term {
-    final Type type;
-    final Term a;
+  // A term with subterms. The subterms are already interned, so equality only needs to compare
+  // them by identity, and properties that would otherwise need a recursive walk can be computed
+  // once from those of the subterms, when the node is made
+  private abstract static class Compound extends Term {
+    private int hash;
+    private int symbolCount;
+    private int depth;
+    private boolean ground;
+    private Object orderCache;
+
+    // Called by each constructor once the subterms are set
+    final void init(int seed) {
+      var tag = tag();
+      var hash = 31 * seed + tag.ordinal();
+      var symbolCount = 1L;
+      var depth = 0;
+      var ground = true;
+      var n = size();
+      for (var i = 0; i < n; i++) {
+        var a = get(i);
+        hash = 31 * hash + a.hashCode();
+        if (!(i == 0 && tag == Tag.CALL)) symbolCount += a.symbolCount();
+        depth = Math.max(depth, a.depth());
+        ground &= a.isGround();
+      }
+      this.hash = hash;
+      this.symbolCount = Math.toIntExact(symbolCount);
+      this.depth = depth + 1;
+      this.ground = ground;
+    }
 
     @Override
-    public boolean equals(Object o) {
-      if (this == o) return true;
-      if (o == null || getClass() != o.getClass()) return false;
-      Cast cast = (Cast) o;
-      return type.equals(cast.type) && a.equals(cast.a);
+    public final int hashCode() {
+      return hash;
     }
 
     @Override
-    public int hashCode() {
-      return Objects.hash(type, a);
+    public final long symbolCount() {
+      return symbolCount;
+    }
+
+    @Override
+    public final int depth() {
+      return depth;
+    }
+
+    @Override
+    public final boolean isGround() {
+      return ground;
+    }
+
+    @Override
+    final Object orderCache() {
+      return orderCache;
+    }
+
+    @Override
+    final void orderCache(Object x) {
+      orderCache = x;
     }
+  }
+
+  private static final class Cast extends Compound {
+    final Type type;
+    final Term a;
 
     Cast(Type type, Term a) {
       this.type = type;
       this.a = a;
+      init(type.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Cast that)) return false;
+      return type.equals(that.type) && a == that.a;
     }
 
     @Override
@@ -473,7 +599,7 @@ public abstract class Term implements Iterable<Term> {
     @Override
     public Term remake(Term[] v) {
       assert v.length == 1;
-      return new Cast(type, v[0]);
+      return cast(type, v[0]);
     }
 
     @Override
@@ -482,26 +608,21 @@ public abstract class Term implements Iterable<Term> {
     }
   }
 
-  private static final class Term1 extends Term {
+  private static final class Term1 extends Compound {
     final Tag tag;
     final Term a;
 
     Term1(Tag tag, Term a) {
       this.tag = tag;
       this.a = a;
+      init(0);
     }
 
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
-      if (o == null || getClass() != o.getClass()) return false;
-      Term1 term1 = (Term1) o;
-      return tag == term1.tag && a.equals(term1.a);
-    }
-
-    @Override
-    public int hashCode() {
-      return Objects.hash(tag, a);
+      if (!(o instanceof Term1 that)) return false;
+      return tag == that.tag && a == that.a;
     }
 
     @Override
@@ -521,7 +642,7 @@ public abstract class Term implements Iterable<Term> {
     }
   }
 
-  private static final class Term2 extends Term {
+  private static final class Term2 extends Compound {
     final Tag tag;
     final Term a, b;
 
@@ -529,19 +650,14 @@ public abstract class Term implements Iterable<Term> {
       this.tag = tag;
       this.a = a;
       this.b = b;
+      init(0);
     }
 
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
-      if (o == null || getClass() != o.getClass()) return false;
-      Term2 term2 = (Term2) o;
-      return tag == term2.tag && a.equals(term2.a) && b.equals(term2.b);
-    }
-
-    @Override
-    public int hashCode() {
-      return Objects.hash(tag, a, b);
+      if (!(o instanceof Term2 that)) return false;
+      return tag == that.tag && a == that.a && b == that.b;
     }
 
     @Override
@@ -561,28 +677,23 @@ public abstract class Term implements Iterable<Term> {
     }
   }
 
-  private static final class Terms extends Term {
+  private static final class Terms extends Compound {
     final Tag tag;
     final Term[] v;
 
     Terms(Tag tag, Term[] v) {
       this.tag = tag;
       this.v = v;
+      init(0);
     }
 
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
-      if (o == null || getClass() != o.getClass()) return false;
-      Terms terms = (Terms) o;
-      return tag == terms.tag && Arrays.equals(v, terms.v);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = Objects.hash(tag);
-      result = 31 * result + Arrays.hashCode(v);
-      return result;
+      if (!(o instanceof Terms that)) return false;
+      if (tag != that.tag || v.length != that.v.length) return false;
+      for (var i = 0; i < v.length; i++) if (v[i] != that.v[i]) return false;
+      return true;
     }
 
     @Override
@@ -642,14 +753,27 @@ public abstract class Term implements Iterable<Term> {
     return b ? TRUE : FALSE;
   }
 
-  public final long symbolCount() {
-    var n = size();
-    if (n == 0) return 1;
-    var r = 1L;
-    for (var i = tag() == Tag.CALL ? 1 : 0; i < n; i++) r += get(i).symbolCount();
-    return r;
+  // These are the values for leaves; compound terms cache their own
+  public long symbolCount() {
+    return 1;
+  }
+
+  public int depth() {
+    return 0;
+  }
+
+  public boolean isGround() {
+    return true;
   }
 
+  // Data a term order computed for this term, such as its weight. Only compound terms have room
+  // to keep it
+  Object orderCache() {
+    return null;
+  }
+
+  void orderCache(Object x) {}
+
   public final void walkLeaves(Consumer<Term> f) {
     if (size() == 0) {
       f.accept(this);
@@ -666,16 +790,24 @@ public abstract class Term implements Iterable<Term> {
     var n = size();
     if (n == 0) return f.apply(this);
     var v = new Term[n];
-    for (var i = 0; i < n; i++) v[i] = get(i).mapLeaves(f);
-    return remake(v);
+    var changed = false;
+    for (var i = 0; i < n; i++) {
+      v[i] = get(i).mapLeaves(f);
+      if (v[i] != get(i)) changed = true;
+    }
+    return changed ? remake(v) : this;
   }
 
   public final Term map(Function<Term, Term> f) {
     var n = size();
     if (n == 0) return this;
     var v = new Term[n];
-    for (var i = 0; i < n; i++) v[i] = f.apply(get(i));
-    return remake(v);
+    var changed = false;
+    for (var i = 0; i < n; i++) {
+      v[i] = f.apply(get(i));
+      if (v[i] != get(i)) changed = true;
+    }
+    return changed ? remake(v) : this;
   }
 
   public final Term replace(FMap map) {
@@ -688,6 +820,17 @@ public abstract class Term implements Iterable<Term> {
         });
   }
 
+  public final Term replace(Substitution map) {
+    if (isGround() || map.isEmpty()) return this;
+    return mapLeaves(
+        a -> {
+          if (!(a instanceof Var a1)) return a;
+          var b = map.get(a1);
+          if (b == null) return a;
+          return b.replace(map);
+        });
+  }
+
   public final void freeVars(Set<Term> bound, Set<Term> free) {
     switch (tag()) {
       case VAR -> {
@@ -739,6 +882,7 @@ public abstract class Term implements Iterable<Term> {
   }
 
   public boolean contains(Var b) {
+    if (isGround()) return false;
     for (var a : this) if (a.contains(b)) return true;
     return false;
   }
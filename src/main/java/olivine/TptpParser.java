@@ -2,6 +2,9 @@ package olivine;
 
 import java.io.*;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.*;
 
@@ -22,62 +25,147 @@ public final class TptpParser {
   private static final int WORD = -14;
   private static final int XOR = -15;
 
+  // Include files already parsed, shared by every problem in the process; null to parse each
+  // include every time it occurs
+  static volatile IncludeCache includeCache;
+
   // Problem state
   private final CNF cnf;
+  private final Names names;
   private final Map<String, OpaqueType> types;
   private final Map<String, DistinctObject> distinctObjects;
   private final Map<String, Global> globals;
 
-  // File state
+  // File state. The whole file is in the buffer, c is the character at offset i, or -1 at the end
   private final String file;
-  private final InputStream stream;
+  private final ByteBuffer buf;
   private final Set<String> select;
+
+  // When parsing an include for the cache, the files read, so the entry can be checked against them
+  private final List<IncludeCache.Stamp> stamps;
+
+  private int i = -1;
   private int c;
   private int line = 1;
   private int tok;
   private String tokString;
   private final Map<String, Var> free = new HashMap<>();
 
+  // Strings for names in the input, found by their bytes, so a name is only made into a String the
+  // first time it occurs in a problem, including its includes. Characters are single bytes, as if
+  // the input were Latin-1
+  private static final class Names {
+    private byte[][] keys = new byte[1024][];
+    private String[] values = new String[1024];
+    private int size;
+
+    private static int hash(ByteBuffer buf, int start, int end) {
+      var h = 0;
+      for (var i = start; i < end; i++) h = h * 31 + buf.get(i);
+      return h ^ h >>> 16;
+    }
+
+    private static boolean equals(byte[] key, ByteBuffer buf, int start, int end) {
+      if (key.length != end - start) return false;
+      for (var i = 0; i < key.length; i++) if (key[i] != buf.get(start + i)) return false;
+      return true;
+    }
+
+    private void grow() {
+      var keys1 = new byte[keys.length * 2][];
+      var values1 = new String[keys.length * 2];
+      var mask = keys1.length - 1;
+      for (var j = 0; j < keys.length; j++) {
+        var key = keys[j];
+        if (key == null) continue;
+        var i = hash(ByteBuffer.wrap(key), 0, key.length) & mask;
+        while (keys1[i] != null) i = (i + 1) & mask;
+        keys1[i] = key;
+        values1[i] = values[j];
+      }
+      keys = keys1;
+      values = values1;
+    }
+
+    String get(ByteBuffer buf, int start, int end) {
+      var mask = keys.length - 1;
+      var i = hash(buf, start, end) & mask;
+      for (; ; ) {
+        var key = keys[i];
+        if (key == null) break;
+        if (equals(key, buf, start, end)) return values[i];
+        i = (i + 1) & mask;
+      }
+      var key = new byte[end - start];
+      buf.get(start, key);
+      var s = new String(key, StandardCharsets.ISO_8859_1);
+      keys[i] = key;
+      values[i] = s;
+      if (++size > keys.length / 2) grow();
+      return s;
+    }
+  }
+
   private ParseError err(String s) {
     return new ParseError(String.format("%s:%d: %s", file, line, s));
   }
 
   // Tokenizer
-  private void readc(StringBuilder sb) throws IOException {
-    sb.append((char) c);
-    c = stream.read();
+  private void read() {
+    if (i < buf.limit()) i++;
+    c = i < buf.limit() ? buf.get(i) & 0xff : -1;
+  }
+
+  // The token is the text from the given offset to the current character
+  private void name(int start) {
+    tokString = names.get(buf, start, i);
   }
 
-  private void lexQuote() throws IOException {
+  private void lexQuote() {
     var quote = c;
-    var sb = new StringBuilder();
-    c = stream.read();
+    read();
+    var start = i;
+    var escaped = false;
     while (c != quote) {
       if (c < ' ') throw err("unclosed quote");
-      if (c == '\\') c = stream.read();
-      readc(sb);
+      if (c == '\\') {
+        escaped = true;
+        read();
+      }
+      read();
     }
-    c = stream.read();
-    tokString = sb.toString();
+    if (escaped) {
+      // Without the backslashes
+      var v = new byte[i - start];
+      var n = 0;
+      for (var j = start; j < i; j++) {
+        var b = buf.get(j);
+        if (b == '\\') b = buf.get(++j);
+        v[n++] = b;
+      }
+      tokString = names.get(ByteBuffer.wrap(v), 0, n);
+    } else name(start);
+    read();
   }
 
-  private void lex() throws IOException {
+  private void lex() {
     for (; ; ) {
       tok = c;
+      var start = i;
       switch (c) {
         case '\n' -> {
           line++;
-          c = stream.read();
+          read();
           continue;
         }
         case ' ', '\f', '\r', '\t' -> {
-          c = stream.read();
+          read();
           continue;
         }
         case '!' -> {
-          c = stream.read();
+          read();
           if (c == '=') {
-            c = stream.read();
+            read();
             tok = NOT_EQUALS;
           }
         }
@@ -86,80 +174,80 @@ public final class TptpParser {
           tok = DISTINCT_OBJECT;
         }
         case '$' -> {
-          c = stream.read();
-          var sb = new StringBuilder();
-          while (Etc.isIdPart(c)) readc(sb);
+          read();
+          start = i;
+          while (Etc.isIdPart(c)) read();
           tok = DEFINED_WORD;
-          tokString = sb.toString();
+          name(start);
         }
         case '%' -> {
-          do c = stream.read();
+          do read();
           while (c != '\n' && c >= 0);
           continue;
         }
         case '+', '-', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> {
-          var sb = new StringBuilder();
-          do readc(sb);
+          // Numbers are seldom repeated, so they are not kept as names
+          do read();
           while (Etc.isDigit(c));
           switch (c) {
             case '.' -> {
-              do readc(sb);
+              do read();
               while (Etc.isDigit(c));
             }
             case '/' -> {
-              do readc(sb);
+              do read();
               while (Etc.isDigit(c));
               tok = RATIONAL;
-              tokString = sb.toString();
+              tokString = string(start);
               return;
             }
             case 'E', 'e' -> {}
             default -> {
               tok = INTEGER;
-              tokString = sb.toString();
+              tokString = string(start);
               return;
             }
           }
-          if (c == 'e' || c == 'E') readc(sb);
-          if (c == '+' || c == '-') readc(sb);
-          while (Etc.isDigit(c)) readc(sb);
+          if (c == 'e' || c == 'E') read();
+          if (c == '+' || c == '-') read();
+          while (Etc.isDigit(c)) read();
           tok = REAL;
-          tokString = sb.toString();
+          tokString = string(start);
         }
         case '/' -> {
-          c = stream.read();
+          read();
           if (c != '*') throw err("expected '*'");
-          c = stream.read();
+          read();
           for (; ; ) {
             switch (c) {
               case -1 -> throw err("unclosed block comment");
-              case '*' -> c = stream.read();
+              case '*' -> read();
               default -> {
-                c = stream.read();
+                read();
                 continue;
               }
             }
             if (c == '/') break;
           }
-          c = stream.read();
+          read();
           continue;
         }
         case '<' -> {
-          c = stream.read();
+          read();
           switch (c) {
             case '=' -> {
-              c = stream.read();
+              read();
               if (c == '>') {
-                c = stream.read();
+                read();
                 tok = EQV;
                 break;
               }
               tok = IMPLIESR;
             }
             case '~' -> {
-              c = stream.read();
+              read();
               if (c == '>') {
-                c = stream.read();
+                read();
                 tok = XOR;
                 break;
               }
@@ -168,9 +256,9 @@ public final class TptpParser {
           }
         }
         case '=' -> {
-          c = stream.read();
+          read();
           if (c == '>') {
-            c = stream.read();
+            read();
             tok = IMPLIES;
           }
         }
@@ -200,11 +288,10 @@ public final class TptpParser {
             'X',
             'Y',
             'Z' -> {
-          var sb = new StringBuilder();
-          do readc(sb);
+          do read();
           while (Etc.isIdPart(c));
           tok = VAR;
-          tokString = sb.toString();
+          name(start);
         }
         case '\'' -> {
           lexQuote();
@@ -237,31 +324,36 @@ public final class TptpParser {
             'x',
             'y',
             'z' -> {
-          var sb = new StringBuilder();
-          do readc(sb);
+          do read();
           while (Etc.isIdPart(c));
           tok = WORD;
-          tokString = sb.toString();
+          name(start);
         }
         case '~' -> {
-          c = stream.read();
+          read();
           switch (c) {
             case '&' -> {
-              c = stream.read();
+              read();
               tok = NAND;
             }
             case '|' -> {
-              c = stream.read();
+              read();
               tok = NOR;
             }
           }
         }
-        default -> c = stream.read();
+        default -> read();
       }
       return;
     }
   }
 
+  private String string(int start) {
+    var v = new byte[i - start];
+    buf.get(start, v);
+    return new String(v, StandardCharsets.ISO_8859_1);
+  }
+
   // parser
   private boolean eat(int k) throws IOException {
     if (tok == k) {
@@ -637,10 +729,10 @@ public final class TptpParser {
     return select.contains(name);
   }
 
-  private void collect(String name, Term a) {
+  private void collect(String name, Term a, boolean goal) {
     if (!selecting(name)) return;
     a.check(Type.BOOLEAN);
-    cnf.add(a);
+    cnf.add(a, goal);
   }
 
   private void skip() throws IOException {
@@ -656,21 +748,25 @@ public final class TptpParser {
 
   private TptpParser(
       String file,
-      InputStream stream,
+      ByteBuffer buf,
       CNF cnf,
+      Names names,
       Map<String, OpaqueType> types,
       Map<String, DistinctObject> distinctObjects,
       Map<String, Global> globals,
-      Set<String> select)
+      Set<String> select,
+      List<IncludeCache.Stamp> stamps)
       throws IOException {
     this.file = file;
-    this.stream = stream;
+    this.buf = buf;
     this.cnf = cnf;
+    this.names = names;
     this.types = types;
     this.distinctObjects = distinctObjects;
     this.globals = globals;
     this.select = select;
-    c = stream.read();
+    this.stamps = stamps;
+    read();
     lex();
     try {
       while (tok != -1) {
@@ -681,13 +777,13 @@ public final class TptpParser {
           case "cnf" -> {
             expect(',');
 
-            word();
+            var role = word();
             expect(',');
 
             // we could treat CNF input specially as clauses, but it is equally correct and simpler
             // to just treat it as formulas
             var a = logicFormula(null).quantify();
-            collect(name, a);
+            collect(name, a, role.equals("negated_conjecture"));
           }
           case "fof", "tff", "tcf" -> {
             expect(',');
@@ -727,12 +823,13 @@ public final class TptpParser {
             assert a.freeVars().equals(Set.of());
             if (selecting(name)) {
               if (role.equals("conjecture")) a = Term.of(Tag.NOT, a);
-              collect(name, a);
+              collect(name, a, role.equals("conjecture") || role.equals("negated_conjecture"));
             }
           }
           case "thf" -> throw new Inappropriate();
           case "include" -> {
-            var file1 = Path.of(Etc.tptp(), name).toString();
+            var file1 = name;
+            if (!Path.of(name).isAbsolute()) file1 = Path.of(Etc.tptp(), name).toString();
             var select1 = select;
             if (eat(',')) {
               if (tok == WORD && tokString.equals("all")) {
@@ -747,9 +844,7 @@ public final class TptpParser {
                 expect(']');
               }
             }
-            try (var stream1 = new BufferedInputStream(new FileInputStream(file1))) {
-              new TptpParser(file1, stream1, cnf, types, distinctObjects, globals, select1);
-            }
+            include(file1, select1);
           }
           default -> throw err(String.format("'%s': unknown language", s));
         }
@@ -762,7 +857,136 @@ public final class TptpParser {
     }
   }
 
+  private void include(String file, Set<String> select) throws IOException {
+    var cache = includeCache;
+    if (cache != null) {
+      var key = IncludeCache.key(file, select);
+      var entry = cache.get(key);
+      if (entry == null) {
+        Stats.inc("include cache misses");
+        entry = parseAlone(key, file, select);
+        cache.put(entry);
+      } else Stats.inc("include cache hits");
+      if (entry.clauses == null) Stats.inc("include cache dependent");
+      else {
+        if (stamps != null) stamps.addAll(entry.stamps);
+        if (use(entry)) return;
+        Stats.inc("include cache conflicts");
+      }
+    }
+    new TptpParser(file, map(file), cnf, names, types, distinctObjects, globals, select, stamps);
+  }
+
+  // Parses an include file with symbols of its own, rather than those of the problem including it,
+  // for the cache. An include that is not valid on its own, such as one using functions declared
+  // by the problem, gets an entry with no clauses, saying it must be parsed in place
+  private static IncludeCache.Entry parseAlone(String key, String file, Set<String> select)
+      throws IOException {
+    var stamps = new ArrayList<IncludeCache.Stamp>();
+    stamps.add(new IncludeCache.Stamp(file));
+    var cnf = new CNF();
+    try {
+      new TptpParser(
+          file,
+          map(file),
+          cnf,
+          new Names(),
+          new HashMap<>(),
+          new HashMap<>(),
+          new HashMap<>(),
+          select,
+          stamps);
+    } catch (ParseError e) {
+      return new IncludeCache.Entry(key, stamps, null, null);
+    }
+
+    var codec = new ClauseCodec();
+    var clauses = ClauseFile.encode(codec, cnf.clauses);
+    return new IncludeCache.Entry(key, stamps, List.copyOf(codec.symbols()), clauses);
+  }
+
+  // Adds the clauses of a cached include, with its symbols replaced by those of this problem.
+  // Returns false, having changed nothing, if a name is already in use here in a way that does not
+  // fit its use in the include; parsing the include in place then gives the same result it always
+  // did, whether that is an error or types resolved by the earlier use
+  private boolean use(IncludeCache.Entry entry) {
+    for (var a : entry.symbols) if (a instanceof Global global && !fits(global)) return false;
+    var symbols = new ArrayList<Object>(entry.symbols.size());
+    for (var a : entry.symbols) symbols.add(symbol(a));
+    ClauseFile.decode(new ClauseCodec(symbols), entry.clauses, cnf.clauses);
+    return true;
+  }
+
+  private boolean fits(Global a) {
+    if (a.name == null) return true;
+    var b = globals.get(a.name);
+    if (b == null) return true;
+    if (b.getClass() != a.getClass()) return false;
+
+    // Not yet typed, if it only occurred in formulas that were not selected
+    if (b instanceof Func f ? f.returnType == null : b.type() == null) return true;
+    return sameType(a.type(), b.type());
+  }
+
+  // Opaque types from the cache are different objects, but with the same names
+  private static boolean sameType(Type a, Type b) {
+    if (a.kind() != b.kind() || a.size() != b.size()) return false;
+    if (a.kind() == Kind.OPAQUE) return a.toString().equals(b.toString());
+    for (var i = 0; i < a.size(); i++) if (!sameType(a.get(i), b.get(i))) return false;
+    return true;
+  }
+
+  private Type type(Type a) {
+    return switch (a.kind()) {
+      case OPAQUE -> types.computeIfAbsent(a.toString(), OpaqueType::new);
+      case FUNC -> {
+        var v = new Type[a.size()];
+        for (var i = 0; i < v.length; i++) v[i] = type(a.get(i));
+        yield Type.of(Kind.FUNC, v);
+      }
+      default -> a;
+    };
+  }
+
+  private Object symbol(Object a) {
+    if (a instanceof Type type) return type(type);
+    if (a instanceof DistinctObject) {
+      var name = a.toString();
+      return distinctObjects.computeIfAbsent(name, DistinctObject::new);
+    }
+    if (a instanceof Global global) {
+      // Skolem functions are new for each problem
+      var name = global.name;
+      var b = name == null ? null : globals.get(name);
+      if (b == null) {
+        b = global instanceof Func ? new Func(name) : new GlobalVar(name);
+        if (name != null) globals.put(name, b);
+      }
+      b.setType(type(global.type()));
+      return b;
+    }
+
+    // Numbers and truth values are the same in every problem
+    return a;
+  }
+
+  // Include files can be large, so they are mapped into memory rather than read
+  private static ByteBuffer map(String file) throws IOException {
+    try (var channel = FileChannel.open(Path.of(file))) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
   public static void parse(String file, InputStream stream, CNF cnf) throws IOException {
-    new TptpParser(file, stream, cnf, new HashMap<>(), new HashMap<>(), new HashMap<>(), null);
+    new TptpParser(
+        file,
+        ByteBuffer.wrap(stream.readAllBytes()),
+        cnf,
+        new Names(),
+        new HashMap<>(),
+        new HashMap<>(),
+        new HashMap<>(),
+        null,
+        null);
   }
 }
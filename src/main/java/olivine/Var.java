@@ -1,6 +1,12 @@
 package olivine;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public final class Var extends Term {
+  private static final AtomicInteger count = new AtomicInteger();
+
+  // Number used to look up the variable in a Substitution
+  final int id = count.getAndIncrement();
   private final Type type;
 
   public Var(Type type) {
@@ -37,10 +43,51 @@ public final class Var extends Term {
     if (!type.equals(b.type())) return null;
 
     var a = map.get(this);
-    if (a != null) return a.equals(b) ? map : null;
+    if (a != null) return a == b ? map : null;
     return map.add(this, b);
   }
 
+  @Override
+  public boolean unify(Substitution map, Term b) {
+    if (this == b) return true;
+    if (!type.equals(b.type())) return false;
+
+    var a1 = map.get(this);
+    if (a1 != null) return a1.unify(map, b);
+
+    if (b instanceof Var b1) {
+      var b2 = map.get(b1);
+      if (b2 != null) return unify(map, b2);
+    }
+
+    if (b.contains(map, this)) return false;
+    map.bind(this, b);
+    return true;
+  }
+
+  @Override
+  public boolean contains(Substitution map, Var b) {
+    if (this == b) return true;
+    var a = map.get(this);
+    return a != null && a.contains(map, b);
+  }
+
+  @Override
+  public boolean match(Substitution map, Term b) {
+    if (this == b) return true;
+    if (!type.equals(b.type())) return false;
+
+    var a = map.get(this);
+    if (a != null) return a == b;
+    map.bind(this, b);
+    return true;
+  }
+
+  @Override
+  public boolean isGround() {
+    return false;
+  }
+
   @Override
   public boolean contains(Var b) {
     return this == b;
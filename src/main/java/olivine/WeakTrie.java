@@ -27,6 +27,18 @@ public final class WeakTrie<T> {
     return v;
   }
 
+  public void remove(int[] key, T value) {
+    Object node = root;
+    for (var k : key) {
+      var v = (Object[]) node;
+      if (v == null || k >= v.length) return;
+      node = v[k];
+    }
+    @SuppressWarnings("unchecked")
+    var set = (Map<T, Boolean>) node;
+    if (set != null) set.remove(value);
+  }
+
   public T findLessEqual(int[] key, Predicate<T> f) {
     return findLessEqual(key, f, 0, root);
   }
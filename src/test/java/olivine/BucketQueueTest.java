@@ -0,0 +1,88 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+import org.junit.Test;
+
+public class BucketQueueTest {
+  private static final class Item {
+    final int key;
+    final int serial;
+
+    Item(int key, int serial) {
+      this.key = key;
+      this.serial = serial;
+    }
+  }
+
+  @Test
+  public void fifo() {
+    var q = new BucketQueue<Item>(x -> x.key);
+    assertTrue(q.isEmpty());
+    assertNull(q.poll());
+    assertNull(q.peek());
+
+    var a = new Item(5, 0);
+    var b = new Item(2, 1);
+    var c = new Item(5, 2);
+    var d = new Item(2, 3);
+    q.add(a);
+    q.add(b);
+    q.add(c);
+    q.add(d);
+    assertEquals(4, q.size());
+    assertSame(b, q.peek());
+
+    var v = new ArrayList<Item>(q);
+    assertEquals(4, v.size());
+    assertSame(b, v.get(0));
+    assertSame(d, v.get(1));
+    assertSame(a, v.get(2));
+    assertSame(c, v.get(3));
+
+    assertSame(b, q.poll());
+    assertSame(d, q.poll());
+
+    // Below the cursor
+    var e = new Item(0, 4);
+    q.add(e);
+    assertSame(e, q.poll());
+    assertSame(a, q.poll());
+    assertSame(c, q.poll());
+    assertTrue(q.isEmpty());
+
+    q.add(a);
+    q.clear();
+    assertTrue(q.isEmpty());
+    assertNull(q.poll());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negative() {
+    new BucketQueue<Integer>(x -> x).add(-1);
+  }
+
+  @Test
+  public void sameAsPriorityQueue() {
+    var random = new Random(0);
+    var q = new BucketQueue<Item>(x -> x.key);
+    var r =
+        new PriorityQueue<Item>(
+            Comparator.<Item>comparingInt(x -> x.key).thenComparingInt(x -> x.serial));
+    for (var i = 0; i < 10000; i++) {
+      if (random.nextInt(3) == 0) assertSame(r.poll(), q.poll());
+      else {
+        var x = new Item(random.nextInt(100), i);
+        q.add(x);
+        r.add(x);
+      }
+      assertEquals(r.size(), q.size());
+    }
+    while (!r.isEmpty()) assertSame(r.poll(), q.poll());
+    assertTrue(q.isEmpty());
+  }
+}
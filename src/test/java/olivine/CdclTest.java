@@ -160,4 +160,176 @@ public class CdclTest {
     assertSuccessors(graph, x9, x11);
     assertSuccessors(graph, x10, x11, x12);
   }
+
+  private static boolean satisfies(Cdcl solver, List<int[]> clauses) {
+    loop:
+    for (var c : clauses) {
+      for (var x : c) if (solver.value(Math.abs(x)) == x > 0) continue loop;
+      return false;
+    }
+    return true;
+  }
+
+  private static Cdcl solver(List<int[]> clauses) {
+    var solver = new Cdcl();
+    for (var c : clauses) solver.add(c);
+    return solver;
+  }
+
+  private static List<Clause> terms(List<int[]> clauses, int vars) {
+    var atoms = new GlobalVar[vars + 1];
+    for (var i = 1; i <= vars; i++) atoms[i] = new GlobalVar("x" + i, Type.BOOLEAN);
+    var v = new ArrayList<Clause>();
+    for (var c : clauses) {
+      var negative = new ArrayList<Term>();
+      var positive = new ArrayList<Term>();
+      for (var x : c) (x < 0 ? negative : positive).add(atoms[Math.abs(x)]);
+      var d = new Clause(negative, positive);
+      if (!d.isTrue()) v.add(d);
+    }
+    return v;
+  }
+
+  @Test
+  public void small() {
+    assertTrue(solver(List.of()).solve(1000));
+    assertTrue(solver(List.of(new int[] {1, 2}, new int[] {-1})).solve(1000));
+    assertFalse(solver(List.of(new int[] {1}, new int[] {-1})).solve(1000));
+    assertFalse(solver(List.of(new int[] {})).solve(1000));
+
+    // Duplicate literals and tautologies
+    var clauses =
+        List.of(new int[] {1, 1, -2}, new int[] {2, -2}, new int[] {2}, new int[] {-1, 3});
+    var solver = solver(clauses);
+    assertTrue(solver.solve(1000));
+    assertTrue(satisfies(solver, clauses));
+  }
+
+  // Placing n + 1 pigeons in n holes
+  private static List<int[]> pigeons(int n) {
+    var clauses = new ArrayList<int[]>();
+    for (var i = 0; i <= n; i++) {
+      var c = new int[n];
+      for (var j = 0; j < n; j++) c[j] = i * n + j + 1;
+      clauses.add(c);
+    }
+    for (var j = 0; j < n; j++)
+      for (var i = 0; i <= n; i++)
+        for (var k = i + 1; k <= n; k++)
+          clauses.add(new int[] {-(i * n + j + 1), -(k * n + j + 1)});
+    return clauses;
+  }
+
+  @Test
+  public void pigeonhole() {
+    assertFalse(solver(pigeons(6)).solve(Long.MAX_VALUE));
+    assertThrows(Fail.class, () -> solver(pigeons(8)).solve(10));
+  }
+
+  @Test
+  public void random() {
+    var random = new Random(0);
+    var sat = 0;
+    for (var trial = 0; trial < 200; trial++) {
+      // Near the ratio of clauses to variables where random 3-SAT is hardest
+      var vars = 5 + random.nextInt(25);
+      var clauses = new ArrayList<int[]>();
+      for (var i = 0; i < vars * 43 / 10; i++) {
+        var c = new int[3];
+        for (var j = 0; j < c.length; j++) {
+          c[j] = 1 + random.nextInt(vars);
+          if (random.nextBoolean()) c[j] = -c[j];
+        }
+        clauses.add(c);
+      }
+      var solver = solver(clauses);
+      var result = solver.solve(Long.MAX_VALUE);
+      assertEquals(Dpll.sat(terms(clauses, vars), Long.MAX_VALUE), result);
+      assertEquals(result, Cdcl.sat(terms(clauses, vars), Long.MAX_VALUE));
+      if (result) {
+        assertTrue(satisfies(solver, clauses));
+        sat++;
+      }
+    }
+    assertTrue(0 < sat && sat < 200);
+  }
+
+  @Test
+  public void assumptions() {
+    var solver = solver(List.of(new int[] {-1, 2}, new int[] {-2, 3}, new int[] {-4, -5}));
+    assertTrue(solver.solve(1000, 1));
+    assertTrue(solver.value(3));
+    assertFalse(solver.solve(1000, 5, 1, -3));
+    assertEquals(Set.of(1, -3), set(solver.failed()));
+    assertFalse(solver.solve(1000, 4, 5));
+    assertEquals(Set.of(4, 5), set(solver.failed()));
+    assertFalse(solver.solve(1000, 6, -6));
+    assertEquals(Set.of(6, -6), set(solver.failed()));
+
+    // Failed assumptions are not remembered, but added clauses are
+    assertTrue(solver.solve(1000));
+    solver.add(-3);
+    assertFalse(solver.solve(1000, 1));
+    assertEquals(Set.of(1), set(solver.failed()));
+    assertTrue(solver.solve(1000, -1));
+    solver.add(1);
+    assertFalse(solver.solve(1000, 4));
+    assertEquals(0, solver.failed().length);
+  }
+
+  private static Set<Integer> set(int[] v) {
+    var set = new HashSet<Integer>();
+    for (var x : v) set.add(x);
+    return set;
+  }
+
+  @Test
+  public void incremental() {
+    var random = new Random(1);
+    for (var trial = 0; trial < 50; trial++) {
+      var vars = 10 + random.nextInt(30);
+      var clauses = new ArrayList<int[]>();
+      var solver = new Cdcl();
+      for (var round = 0; round < 20; round++) {
+        // Some clauses more, then solving under a few assumptions
+        for (var i = 0; i < vars / 2; i++) {
+          var c = new int[3];
+          for (var j = 0; j < c.length; j++) {
+            c[j] = 1 + random.nextInt(vars);
+            if (random.nextBoolean()) c[j] = -c[j];
+          }
+          clauses.add(c);
+          solver.add(c);
+        }
+        var assumptions = new int[random.nextInt(5)];
+        for (var i = 0; i < assumptions.length; i++) {
+          assumptions[i] = 1 + random.nextInt(vars);
+          if (random.nextBoolean()) assumptions[i] = -assumptions[i];
+        }
+        var fresh = new ArrayList<>(clauses);
+        for (var x : assumptions) fresh.add(new int[] {x});
+        var expected = solver(fresh).solve(Long.MAX_VALUE);
+        assertEquals(expected, solver.solve(Long.MAX_VALUE, assumptions));
+        if (expected) {
+          assertTrue(satisfies(solver, fresh));
+          continue;
+        }
+
+        // The failed assumptions are enough to make the clauses unsatisfiable
+        var core = new ArrayList<>(clauses);
+        var given = set(assumptions);
+        for (var x : solver.failed()) {
+          assertTrue(given.contains(x));
+          core.add(new int[] {x});
+        }
+        assertFalse(solver(core).solve(Long.MAX_VALUE));
+      }
+    }
+  }
+
+  @Test
+  public void luby() {
+    var expected = new long[] {1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, 1};
+    for (var i = 0; i < expected.length; i++) assertEquals(expected[i], Cdcl.luby(i));
+  }
 }
@@ -0,0 +1,78 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ClauseCodecTest {
+  private static Clause roundTrip(ClauseCodec codec, Clause c) {
+    var v = codec.encode(c);
+    assertEquals(v.length, v[0]);
+
+    // Decode from the middle of a larger array
+    var w = new int[v.length + 3];
+    System.arraycopy(v, 0, w, 2, v.length);
+    var d = codec.decode(w, 2);
+
+    assertEquals(c.negativeSize, d.negativeSize);
+    assertEquals(c.literals.length, d.literals.length);
+    assertEquals(c.weight, d.weight);
+    assertEquals(c.goal, d.goal);
+    assertEquals(c.birth, d.birth);
+    assertArrayEquals(c.splits, d.splits);
+    assertArrayEquals(v, codec.encode(d));
+    return d;
+  }
+
+  @Test
+  public void ground() {
+    var codec = new ClauseCodec();
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var p = new GlobalVar("p", Type.BOOLEAN);
+    var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var c =
+        new Clause(
+            new ArrayList<>(List.of(p)),
+            new ArrayList<>(
+                List.of(
+                    Term.of(Tag.EQUALS, f.call(a, new DistinctObject("\"x\"")), a),
+                    Term.of(Tag.LESS, Term.of(3), Term.of(Tag.ADD, Term.of(1), Term.of(1))))));
+    c.goal = true;
+    c.birth = -123456789012L;
+    c.splits = new int[] {2, 5};
+    var d = roundTrip(codec, c);
+    assertEquals(c.toString(), d.toString());
+    for (var i = 0; i < c.literals.length; i++) assertSame(c.literals[i], d.literals[i]);
+  }
+
+  @Test
+  public void vars() {
+    var codec = new ClauseCodec();
+    var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var x = new Var(Type.INDIVIDUAL);
+    var y = new Var(Type.INDIVIDUAL);
+    var n = new Var(Type.INTEGER);
+    var c =
+        new Clause(
+            new ArrayList<>(List.of(Term.of(Tag.EQUALS, f.call(x, y), f.call(y, x)))),
+            new ArrayList<>(
+                List.of(
+                    Term.of(Tag.IS_INTEGER, Term.cast(Type.RATIONAL, n)),
+                    Term.of(Tag.EQUALS, x, y))));
+    var d = roundTrip(codec, c);
+
+    // Variables are fresh, but shared in the same pattern
+    var a = d.literals[0];
+    var x1 = a.get(0).get(1);
+    var y1 = a.get(0).get(2);
+    assertTrue(x1 instanceof Var);
+    assertNotSame(x, x1);
+    assertNotSame(x1, y1);
+    assertSame(x1, a.get(1).get(2));
+    assertSame(y1, a.get(1).get(1));
+    assertSame(Type.INTEGER, d.literals[1].get(0).get(0).type());
+    assertSame(Type.RATIONAL, d.literals[1].get(0).type());
+  }
+}
@@ -0,0 +1,70 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ClauseFileTest {
+  // Variables print differently in each parse
+  private static List<String> strings(List<Clause> clauses) {
+    var v = new ArrayList<String>();
+    for (var c : clauses)
+      v.add(c.toString().replaceAll("%[0-9a-f]+", "X") + ' ' + c.goal + ' ' + c.birth);
+    return v;
+  }
+
+  @Test
+  public void saveLoad() throws IOException {
+    var cnf = new CNF();
+    TptpParser.parse(
+        null,
+        Etc.stringInputStream(
+            "fof(a1, axiom, ![X]: (p(X) => ?[Y]: q(X, Y))).\n"
+                + "tff(t, type, s: $tType).\n"
+                + "tff(f, type, f: (s * $int) > s).\n"
+                + "tff(a2, axiom, ![X: s, Y: $real]: (f(X, 3) = X | $less(Y, 2.5))).\n"
+                + "tff(a3, axiom, ![X: $rat]: $less(X, 1/3)).\n"
+                + "fof(a4, axiom, r(\"x\", b) | p(a)).\n"
+                + "fof(c, conjecture, p(a)).\n"),
+        cnf);
+    var file = Files.createTempFile("olivine", ".clauses");
+    ClauseFile.save(cnf.clauses, file.toString());
+
+    var loaded = new CNF();
+    try (var stream = Files.newInputStream(file)) {
+      ClauseFile.load(file.toString(), stream, loaded);
+    }
+    assertEquals(strings(cnf.clauses), strings(loaded.clauses));
+
+    // Each symbol is one object, wherever it occurs
+    var clauses = loaded.clauses;
+    var a = clauses.get(clauses.size() - 1).literals[0].get(1);
+    assertSame(a, clauses.get(clauses.size() - 2).literals[1].get(1));
+    Files.delete(file);
+  }
+
+  @Test
+  public void invalid() {
+    assertThrows(
+        ParseError.class,
+        () ->
+            ClauseFile.load(
+                "x", new ByteArrayInputStream("fof(a, axiom, p).".getBytes()), new CNF()));
+    assertThrows(
+        ParseError.class,
+        () -> ClauseFile.load("x", new ByteArrayInputStream(new byte[] {0x4f, 0x4c}), new CNF()));
+
+    // One symbol, a type of an unknown kind
+    for (var kind : new byte[] {-1, 100}) {
+      var bytes = new byte[] {0x4f, 0x4c, 0x43, 0x46, 0, 0, 0, 1, 0, 0, 0, 1, 0, kind};
+      assertThrows(
+          IOException.class,
+          () -> ClauseFile.load("x", new ByteArrayInputStream(bytes), new CNF()));
+    }
+  }
+}
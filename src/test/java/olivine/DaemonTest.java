@@ -0,0 +1,89 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class DaemonTest {
+  // Responses by id
+  private static Map<Object, Map<?, ?>> serve(String... requests) throws Exception {
+    var daemon = new Daemon(2, new Strategy(), null);
+    var out = new StringWriter();
+    try {
+      daemon.serve(new BufferedReader(new StringReader(String.join("\n", requests))), out);
+    } finally {
+      daemon.close();
+    }
+    var responses = new HashMap<Object, Map<?, ?>>();
+    for (var line : out.toString().split("\n")) {
+      var response = (Map<?, ?>) Json.parse(line);
+      responses.put(response.get("id"), response);
+    }
+    assertEquals(requests.length, responses.size());
+    return responses;
+  }
+
+  private static final String SOCRATES =
+      "fof(a, axiom, ![X]: (man(X) => mortal(X))).\\n"
+          + "fof(b, axiom, man(socrates)).\\n"
+          + "fof(c, conjecture, mortal(socrates)).\\n";
+
+  // Group theory, which never saturates
+  private static final String GROUP =
+      "cnf(a, axiom, mul(mul(X, Y), Z) = mul(X, mul(Y, Z))).\\n"
+          + "cnf(b, axiom, mul(e, X) = X).\\n"
+          + "cnf(c, axiom, mul(inv(X), X) = e).\\n";
+
+  @Test
+  public void serve() throws Exception {
+    var responses =
+        serve(
+            "{\"id\": 1, \"text\": \"" + SOCRATES + "\", \"language\": \"tptp\"}",
+            "{\"id\": 2, \"text\": \"p cnf 1 1\\n1 0\\n\", \"language\": \"dimacs\"}",
+            "{\"id\": 3, \"text\": \"" + GROUP + "\", \"language\": \"tptp\", \"steps\": 10}",
+            "{\"id\": 4, \"text\": \"" + GROUP + "\", \"language\": \"tptp\", \"timeout\": 0.5}",
+            "{\"id\": 5, \"text\": \""
+                + SOCRATES
+                + "\", \"language\": \"tptp\", \"options\": {\"selection\": \"max-l-complex\","
+                + " \"portfolio\": \"small\"}}",
+            "{\"id\": 6, \"text\": \"p cnf 1 1\\n1 0\\n\"}",
+            "{\"id\": 7, \"file\": \"x.p\", \"options\": {\"no-such-option\": 1}}",
+            "[1, 2]");
+
+    assertEquals("unsat", responses.get(1L).get("result"));
+    assertEquals(3L, ((Map<?, ?>) responses.get(1L).get("stats")).get("input clauses"));
+    assertEquals("sat", responses.get(2L).get("result"));
+    assertEquals("unknown", responses.get(3L).get("result"));
+    assertEquals("timeout", responses.get(4L).get("result"));
+    assertEquals("unsat", responses.get(5L).get("result"));
+
+    // Each request has its own statistics
+    for (var id : new Object[] {1L, 5L}) {
+      var stats = (Map<?, ?>) responses.get(id).get("stats");
+      assertEquals(
+          id.equals(5L),
+          stats.keySet().stream().anyMatch(key -> key.toString().startsWith("portfolio wins/")));
+    }
+
+    for (var id : new Object[] {6L, 7L, null}) {
+      assertEquals("error", responses.get(id).get("result"));
+      assertNotNull(responses.get(id).get("message"));
+    }
+  }
+
+  @Test
+  public void badLine() throws Exception {
+    // A line that is not valid JSON gets an error, and does not stop the requests after it
+    var responses =
+        serve(
+            "{\"a\": \"\\uZZZZ\"}",
+            "{\"id\": 1, \"text\": \"p cnf 1 1\\n1 0\\n\", \"language\": \"dimacs\"}");
+    assertEquals("error", responses.get(null).get("result"));
+    assertEquals("sat", responses.get(1L).get("result"));
+  }
+}
@@ -0,0 +1,78 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class DimacsParserTest {
+  private static DimacsParser.Problem read(String s) throws IOException {
+    return DimacsParser.read("test.cnf", Etc.stringInputStream(s));
+  }
+
+  private static int[] literals(DimacsParser.Problem problem) {
+    return Arrays.copyOf(problem.literals, problem.size);
+  }
+
+  @Test
+  public void read() throws IOException {
+    var problem = read("c example\np cnf 3 2\n1 -3 0\n2 3 -1 0\n");
+    assertEquals(3, problem.vars);
+    assertEquals(2, problem.clauses);
+    assertArrayEquals(new int[] {1, -3, 0, 2, 3, -1, 0}, literals(problem));
+
+    // The problem line is optional, and the last clause need not end with 0
+    problem = read("1\t-2 0 c comment\r\n 12 ");
+    assertEquals(12, problem.vars);
+    assertArrayEquals(new int[] {1, -2, 0, 12, 0}, literals(problem));
+
+    // An empty clause
+    problem = read("1 0 0\n");
+    assertEquals(2, problem.clauses);
+
+    // SATLIB ends files with %
+    problem = read("1 2 0\n%\n0\n");
+    assertEquals(1, problem.clauses);
+
+    // A header promising more than the file has does not leave a large array behind
+    problem = read("p cnf 500000000 500000000\n1 0\n");
+    assertEquals(2, problem.literals.length);
+  }
+
+  @Test
+  public void errors() {
+    assertThrows(ParseError.class, () -> read("p dnf 1 1\n"));
+    assertThrows(ParseError.class, () -> read("1 - 2 0\n"));
+    assertThrows(ParseError.class, () -> read("1 x 0\n"));
+    assertThrows(ParseError.class, () -> read("99999999999 0\n"));
+    try {
+      read("1 0\n\n-0\n");
+      fail();
+    } catch (ParseError e) {
+      assertEquals("test.cnf:3: expected variable", e.getMessage());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Test
+  public void parse() throws IOException {
+    var cnf = new CNF();
+    DimacsParser.parse("test.cnf", Etc.stringInputStream("1 -2 0\n2 0\n-1 0\n"), cnf);
+    assertEquals(3, cnf.clauses.size());
+    assertTrue(Clause.propositional(cnf.clauses));
+
+    // Each variable is one term
+    var a = cnf.clauses.get(0).literals[0];
+    assertSame(a, cnf.clauses.get(1).literals[0]);
+    assertFalse(Cdcl.sat(cnf.clauses, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void sat() throws IOException {
+    assertTrue(Cdcl.sat(read("1 -2 0\n2 3 0\n-1 -3 0\n"), Long.MAX_VALUE));
+    assertFalse(Cdcl.sat(read("1 -2 0\n2 0\n-1 0\n"), Long.MAX_VALUE));
+    assertFalse(Cdcl.sat(read("1 2 0\n0\n"), Long.MAX_VALUE));
+  }
+}
@@ -0,0 +1,115 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class FingerprintIndexTest {
+  private final List<Func> funcs = new ArrayList<>();
+  private final List<GlobalVar> globalVars = new ArrayList<>();
+  private final List<Var> vars = new ArrayList<>();
+  private final Random random = new Random(0);
+
+  private Term randomIndividualTerm(int depth) {
+    if (depth == 0 || random.nextInt(100) < 40)
+      if (random.nextInt(100) < 30) return globalVars.get(random.nextInt(globalVars.size()));
+      else return vars.get(random.nextInt(vars.size()));
+
+    var f = funcs.get(random.nextInt(funcs.size()));
+    var args = new Term[f.params.length];
+    for (var i = 0; i < args.length; i++) args[i] = randomIndividualTerm(depth - 1);
+    return f.call(args);
+  }
+
+  private void makeSymbols() {
+    funcs.add(new Func("f1", Type.INDIVIDUAL, Type.INDIVIDUAL));
+    funcs.add(new Func("g1", Type.INDIVIDUAL, Type.INDIVIDUAL));
+    funcs.add(new Func("f2", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL));
+    funcs.add(new Func("g2", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL));
+    funcs.add(new Func("f3", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL));
+    for (var i = 0; i < 3; i++)
+      globalVars.add(new GlobalVar(String.format("a%d", i), Type.INDIVIDUAL));
+    for (var i = 0; i < 3; i++) vars.add(new Var(Type.INDIVIDUAL));
+  }
+
+  @Test
+  public void unifiable() {
+    makeSymbols();
+    var index = new FingerprintIndex<Term>();
+    var terms = new ArrayList<Term>();
+    for (var i = 0; i < 300; i++) {
+      var a = randomIndividualTerm(4);
+      terms.add(a);
+      index.add(a, a);
+    }
+    var found = 0;
+    for (var i = 0; i < 300; i++) {
+      var b = randomIndividualTerm(4);
+      var candidates = new HashSet<Term>();
+      index.forUnifiable(b, candidates::add);
+      for (var a : terms)
+        if (a.unify(FMap.EMPTY, b) != null) {
+          assertTrue(candidates.contains(a));
+          found++;
+        }
+    }
+    assertTrue(found > 0);
+  }
+
+  @Test
+  public void generalizations() {
+    makeSymbols();
+
+    // Indexed terms have their own variables, as demodulators do
+    var index = new FingerprintIndex<Term>();
+    var terms = new ArrayList<Term>();
+    for (var i = 0; i < 300; i++) {
+      var a = randomIndividualTerm(3);
+      terms.add(a);
+      index.add(a, a);
+    }
+    vars.clear();
+    for (var i = 0; i < 3; i++) vars.add(new Var(Type.INDIVIDUAL));
+
+    var found = 0;
+    for (var i = 0; i < 300; i++) {
+      var b = randomIndividualTerm(4);
+      var candidates = new HashSet<Term>();
+      index.forGeneralizations(b, candidates::add);
+      for (var a : terms)
+        if (a.match(FMap.EMPTY, b) != null) {
+          assertTrue(candidates.contains(a));
+          found++;
+        }
+    }
+    assertTrue(found > 0);
+  }
+
+  @Test
+  public void remove() {
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var x = new Var(Type.INDIVIDUAL);
+    var index = new FingerprintIndex<String>();
+    index.add(f.call(a), "fa");
+    index.add(f.call(x), "fx");
+
+    var v = new ArrayList<String>();
+    index.forUnifiable(f.call(a), v::add);
+    assertEquals(2, v.size());
+
+    index.remove(f.call(x), "fx");
+    v.clear();
+    index.forUnifiable(f.call(a), v::add);
+    assertEquals(List.of("fa"), v);
+
+    index.remove(f.call(a), "fa");
+    v.clear();
+    index.forUnifiable(x, v::add);
+    assertTrue(v.isEmpty());
+  }
+}
@@ -0,0 +1,144 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+public class IncludeCacheTest {
+  @After
+  public void off() {
+    TptpParser.includeCache = null;
+  }
+
+  private static String include(Path file) {
+    return "include('" + file + "').\n";
+  }
+
+  private static List<Clause> parse(String s) throws IOException {
+    var cnf = new CNF();
+    TptpParser.parse("test.p", Etc.stringInputStream(s), cnf);
+    return cnf.clauses;
+  }
+
+  // Variables print differently in each parse
+  private static List<String> strings(List<Clause> clauses) {
+    var v = new ArrayList<String>();
+    for (var c : clauses) v.add(c.toString().replaceAll("%[0-9a-f]+", "X") + c.goal);
+    return v;
+  }
+
+  @Test
+  public void cache() throws IOException {
+    var dir = Files.createTempDirectory("olivine");
+    var ax = dir.resolve("a.ax");
+    Files.writeString(
+        ax,
+        "fof(a1, axiom, ![X]: (p(X) => ?[Y]: q(X, Y))).\n"
+            + "tff(t, type, s: $tType).\n"
+            + "tff(f, type, f: (s * $int) > s).\n"
+            + "tff(a2, axiom, ![X: s]: f(X, 3) = X).\n"
+            + "fof(a3, axiom, r(\"x\", 1/2) | p(a)).\n");
+    var s = include(ax) + "fof(c, conjecture, p(a)).\n";
+    var expected = strings(parse(s));
+
+    TptpParser.includeCache = new IncludeCache(dir.resolve("cache"));
+    Stats.reset();
+    assertEquals(expected, strings(parse(s)));
+    assertEquals(1, (long) Stats.get().get("include cache misses"));
+    var clauses = parse(s);
+    assertEquals(expected, strings(clauses));
+    assertEquals(1, (long) Stats.get().get("include cache hits"));
+
+    // Symbols from the include are those of the problem
+    var a = clauses.get(clauses.size() - 1).literals[0].get(1);
+    assertSame(a, clauses.get(clauses.size() - 2).literals[1].get(1));
+
+    // Another run reads the same entry from disk
+    TptpParser.includeCache = new IncludeCache(dir.resolve("cache"));
+    assertEquals(expected, strings(parse(s)));
+    assertEquals(1, (long) Stats.get().get("include cache reads"));
+
+    // A corrupt entry on disk is a miss, and the include is parsed again
+    try (var files = Files.list(dir.resolve("cache"))) {
+      for (var file : files.toList()) {
+        var bytes = Files.readAllBytes(file);
+        for (var i = bytes.length / 2; i < bytes.length; i++) bytes[i] = (byte) 0xff;
+        Files.write(file, bytes);
+      }
+    }
+    TptpParser.includeCache = new IncludeCache(dir.resolve("cache"));
+    assertEquals(expected, strings(parse(s)));
+    assertEquals(1, (long) Stats.get().get("include cache bad entries"));
+    assertEquals(2, (long) Stats.get().get("include cache misses"));
+
+    // Each selection is an entry of its own
+    assertEquals(1, parse(include(ax).replace(").", ", [a2]).")).size());
+    assertEquals(3, (long) Stats.get().get("include cache misses"));
+  }
+
+  @Test
+  public void changed() throws IOException {
+    var dir = Files.createTempDirectory("olivine");
+    var ax = dir.resolve("a.ax");
+    var inner = dir.resolve("b.ax");
+    Files.writeString(ax, include(inner) + "fof(a1, axiom, p(a)).\n");
+    Files.writeString(inner, "fof(b1, axiom, q(b)).\n");
+    TptpParser.includeCache = new IncludeCache(null);
+    assertEquals(2, parse(include(ax)).size());
+
+    // A change to a file included by the include makes its entry out of date
+    Files.writeString(inner, "fof(b1, axiom, q(b)).\nfof(b2, axiom, q(c)).\n");
+    assertEquals(3, parse(include(ax)).size());
+  }
+
+  @Test
+  public void conflict() throws IOException {
+    var dir = Files.createTempDirectory("olivine");
+    var ax = dir.resolve("a.ax");
+    Files.writeString(ax, "fof(a1, axiom, p(a)).\n");
+    var s = "fof(c, axiom, p(a(b))).\n" + include(ax);
+
+    // Where the problem already uses a name in another way, the include is parsed in place, which
+    // reports the error as it always did
+    String expected = null;
+    try {
+      parse(s);
+      fail();
+    } catch (ParseError e) {
+      expected = e.getMessage();
+    }
+    TptpParser.includeCache = new IncludeCache(null);
+    parse(include(ax));
+    Stats.reset();
+    try {
+      parse(s);
+      fail();
+    } catch (ParseError e) {
+      assertEquals(expected, e.getMessage());
+    }
+    assertEquals(1, (long) Stats.get().get("include cache conflicts"));
+  }
+
+  @Test
+  public void dependent() throws IOException {
+    var dir = Files.createTempDirectory("olivine");
+    var ax = dir.resolve("a.ax");
+    Files.writeString(ax, "tff(ax, axiom, ![X: $int]: f(X) = X).\n");
+    var s = "tff(f_type, type, f: $int > $int).\n" + include(ax);
+    var expected = strings(parse(s));
+
+    // On its own, the include takes f to be of individuals, so it is parsed in place, each time
+    TptpParser.includeCache = new IncludeCache(dir.resolve("cache"));
+    Stats.reset();
+    assertEquals(expected, strings(parse(s)));
+    assertEquals(expected, strings(parse(s)));
+    assertEquals(1, (long) Stats.get().get("include cache misses"));
+    assertEquals(2, (long) Stats.get().get("include cache dependent"));
+  }
+}
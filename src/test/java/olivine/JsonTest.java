@@ -0,0 +1,55 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class JsonTest {
+  @Test
+  public void parse() {
+    assertEquals(123L, Json.parse(" 123 "));
+    assertEquals(-1.5, Json.parse("-1.5"));
+    assertEquals(2e3, Json.parse("2e3"));
+    assertEquals(true, Json.parse("true"));
+    assertEquals(false, Json.parse("false"));
+    assertNull(Json.parse("null"));
+    assertEquals("a\"b\\c\né", Json.parse("\"a\\\"b\\\\c\\n\\u00e9\""));
+    assertEquals(List.of(), Json.parse("[]"));
+    assertEquals(Map.of(), Json.parse("{ }"));
+
+    var a = Json.parse("{\"id\": 1, \"options\": {\"lazy\": true}, \"v\": [1, \"x\", null]}");
+    var v = new ArrayList<>();
+    v.add(1L);
+    v.add("x");
+    v.add(null);
+    var map = new LinkedHashMap<String, Object>();
+    map.put("id", 1L);
+    map.put("options", Map.of("lazy", true));
+    map.put("v", v);
+    assertEquals(map, a);
+  }
+
+  @Test
+  public void errors() {
+    for (var s :
+        List.of("", "{", "[1,", "\"abc", "{1: 2}", "tru", "1 2", "-", "\"\\uZZZZ\"", "\"\\u+123\""))
+      assertThrows(s, ParseError.class, () -> Json.parse(s));
+  }
+
+  @Test
+  public void roundTrip() {
+    var map = new LinkedHashMap<String, Object>();
+    map.put("id", null);
+    map.put("result", "un\"sat\"\n");
+    map.put("time", 0.25);
+    map.put("stats", Map.of("passive clauses", 12L));
+    map.put("v", List.of(true, false, "\u0001"));
+    var s = Json.toString(map);
+    assertFalse(s.contains("\n"));
+    assertEquals(map, Json.parse(s));
+  }
+}
@@ -3,7 +3,10 @@ package olivine;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import org.junit.Test;
 
@@ -31,7 +34,7 @@ public class KnuthBendixOrderTest {
     return new Equation(randomIndividualTerm(depth), randomIndividualTerm(depth));
   }
 
-  private void makeOrder() {
+  private Clause makeClause() {
     var negative = new ArrayList<Term>();
     var positive = new ArrayList<Term>();
     for (var f : funcs) {
@@ -40,9 +43,11 @@ public class KnuthBendixOrderTest {
       positive.add(Term.of(Tag.EQUALS, f.call(args), vars.get(0)));
     }
     for (var a : globalVars) positive.add(Term.of(Tag.EQUALS, a, vars.get(0)));
-    var clauses = new ArrayList<Clause>();
-    clauses.add(new Clause(negative, positive));
-    order = new KnuthBendixOrder(clauses);
+    return new Clause(negative, positive);
+  }
+
+  private void makeOrder() {
+    order = new KnuthBendixOrder(List.of(makeClause()));
   }
 
   private void makeRandomOrder() {
@@ -207,6 +212,28 @@ public class KnuthBendixOrderTest {
     checkEqual(Term.cast(Type.REAL, a), Term.cast(Type.REAL, a));
   }
 
+  @Test
+  public void precedence() {
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var b = new GlobalVar("b", Type.INDIVIDUAL);
+    var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL);
+
+    // a = f(b), f(b) = b
+    var clauses = new ArrayList<Clause>();
+    clauses.add(
+        new Clause(new ArrayList<>(), new ArrayList<>(List.of(Term.of(Tag.EQUALS, a, f.call(b))))));
+    clauses.add(
+        new Clause(new ArrayList<>(), new ArrayList<>(List.of(Term.of(Tag.EQUALS, f.call(b), b)))));
+
+    // a occurs first
+    order = new KnuthBendixOrder(clauses, Precedence.OCCURRENCE);
+    assertEquals(PartialOrder.LESS, order.compare(a, b));
+
+    // a occurs once, b three times
+    order = new KnuthBendixOrder(clauses, Precedence.FREQUENCY);
+    assertEquals(PartialOrder.LESS, order.compare(b, a));
+  }
+
   @Test
   public void eqlEquations() {
     makeRandomOrder();
@@ -230,4 +257,126 @@ public class KnuthBendixOrderTest {
       if (!eql(a, b)) checkOrdered(a, b);
     }
   }
+
+  // The original implementation, which recomputes weights and variable counts at every level of
+  // recursion, kept as a reference for the single pass one
+  private static final class ReferenceOrder {
+    private final Map<Term, Integer> weights = new HashMap<>();
+
+    ReferenceOrder(List<Clause> clauses) {
+      var globals = new LinkedHashSet<Term>();
+      for (var c : clauses) for (var a : c.literals) a.walkGlobals(globals::add);
+      var i = 2 + Tag.values().length;
+      for (var a : globals) weights.put(a, i++);
+    }
+
+    private static Map<Var, Integer> vars(Term a) {
+      var map = new HashMap<Var, Integer>();
+      a.walkLeaves(
+          b -> {
+            if (b instanceof Var b1) map.put(b1, map.getOrDefault(b1, 0) + 1);
+          });
+      return map;
+    }
+
+    private int symbolWeight(Term a) {
+      var tag = a.tag();
+      return switch (tag) {
+        case GLOBAL_VAR -> weights.get(a);
+        case TRUE, VAR -> 1;
+        case CALL -> weights.get(a.get(0));
+        default -> tag.ordinal();
+      };
+    }
+
+    private long totalWeight(Term a) {
+      long n = symbolWeight(a);
+      for (var b : a) n += totalWeight(b);
+      return n;
+    }
+
+    PartialOrder compare(Term a, Term b) {
+      var avars = vars(a);
+      var bvars = vars(b);
+      var maybeLess = true;
+      var maybeGreater = true;
+      for (var kv : avars.entrySet())
+        if (kv.getValue() > bvars.getOrDefault(kv.getKey(), 0)) {
+          maybeLess = false;
+          break;
+        }
+      for (var kv : bvars.entrySet())
+        if (kv.getValue() > avars.getOrDefault(kv.getKey(), 0)) {
+          maybeGreater = false;
+          break;
+        }
+      if (!maybeLess && !maybeGreater)
+        return a.equals(b) ? PartialOrder.EQUALS : PartialOrder.UNORDERED;
+
+      var atotalWeight = totalWeight(a);
+      var btotalWeight = totalWeight(b);
+      if (atotalWeight < btotalWeight)
+        return maybeLess ? PartialOrder.LESS : PartialOrder.UNORDERED;
+      if (atotalWeight > btotalWeight)
+        return maybeGreater ? PartialOrder.GREATER : PartialOrder.UNORDERED;
+
+      var asymbolWeight = symbolWeight(a);
+      var bsymbolWeight = symbolWeight(b);
+      if (asymbolWeight < bsymbolWeight)
+        return maybeLess ? PartialOrder.LESS : PartialOrder.UNORDERED;
+      if (asymbolWeight > bsymbolWeight)
+        return maybeGreater ? PartialOrder.GREATER : PartialOrder.UNORDERED;
+
+      switch (a.tag()) {
+        case CAST -> {
+          var c = a.type().compareTo(b.type());
+          if (c != 0) return PartialOrder.of(c);
+        }
+        case INTEGER -> {
+          return PartialOrder.of(a.integerValue().compareTo(b.integerValue()));
+        }
+        case RATIONAL -> {
+          return PartialOrder.of(a.rationalValue().compareTo(b.rationalValue()));
+        }
+        case DISTINCT_OBJECT -> {
+          return PartialOrder.of(a.toString().compareTo(b.toString()));
+        }
+      }
+
+      var n = a.size();
+      var i = 0;
+      while (i < n && a.get(i).equals(b.get(i))) i++;
+      if (i == n) return PartialOrder.EQUALS;
+      return compare(a.get(i), b.get(i));
+    }
+  }
+
+  @Test
+  public void sameAsReference() {
+    funcs.add(new Func("f1", Type.INDIVIDUAL, Type.INDIVIDUAL));
+    funcs.add(new Func("g1", Type.INDIVIDUAL, Type.INDIVIDUAL));
+    funcs.add(new Func("f2", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL));
+    funcs.add(new Func("f3", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL));
+    for (var i = 0; i < 3; i++)
+      globalVars.add(new GlobalVar(String.format("a%d", i), Type.INDIVIDUAL));
+    for (var i = 0; i < 3; i++) vars.add(new Var(Type.INDIVIDUAL));
+    makeOrder();
+    var reference = new ReferenceOrder(List.of(makeClause()));
+
+    var ordered = 0;
+    for (var i = 0; i < ITERATIONS; i++) {
+      var a = randomIndividualTerm(5);
+      var b = randomIndividualTerm(5);
+      var r = order.compare(a, b);
+      assertEquals(reference.compare(a, b), r);
+      if (r == PartialOrder.GREATER || r == PartialOrder.LESS) ordered++;
+
+      // Often, one side is a variant of the other with the variables
+      // moved around, which is where the variable balance matters
+      var c = a.replace(FMap.EMPTY.add(vars.get(0), vars.get(1)));
+      assertEquals(reference.compare(a, c), order.compare(a, c));
+      assertEquals(reference.compare(c, a), order.compare(c, a));
+    }
+    assertTrue(ordered > 0);
+  }
 }
@@ -0,0 +1,74 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class LiteralSelectionTest {
+  private static Clause clause(List<Term> negative, List<Term> positive) {
+    return new Clause(new ArrayList<>(negative), new ArrayList<>(positive));
+  }
+
+  @Test
+  public void select() {
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var p = new Func("p", Type.BOOLEAN, Type.INDIVIDUAL);
+    var q = new Func("q", Type.BOOLEAN, Type.INDIVIDUAL);
+    var r = new Func("r", Type.BOOLEAN, Type.INDIVIDUAL);
+    var s = new GlobalVar("s", Type.BOOLEAN);
+    var x = new Var(Type.INDIVIDUAL);
+
+    var c = clause(List.of(p.call(a), q.call(f.call(x)), r.call(f.call(f.call(a)))), List.of(s));
+    var d = clause(List.of(), List.of(p.call(a), s));
+    var order = new KnuthBendixOrder(List.of(c, d));
+
+    assertEquals(-1, LiteralSelection.NONE.select(c, order));
+
+    // q(f(x)) is not less than r(f(f(a))), because of the variable
+    assertEquals(1, LiteralSelection.MAX_NEGATIVE.select(c, order));
+    assertEquals(0, LiteralSelection.SMALLEST_NEGATIVE.select(c, order));
+    assertEquals(2, LiteralSelection.MAX_L_COMPLEX.select(c, order));
+
+    // Only negative literals are selected
+    for (var selection : LiteralSelection.values()) assertEquals(-1, selection.select(d, order));
+  }
+
+  @Test
+  public void of() {
+    assertEquals(LiteralSelection.MAX_L_COMPLEX, LiteralSelection.of("max-l-complex"));
+    assertEquals(LiteralSelection.NONE, LiteralSelection.of("none"));
+  }
+
+  @Test
+  public void solve() {
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var b = new GlobalVar("b", Type.INDIVIDUAL);
+    var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var p = new Func("p", Type.BOOLEAN, Type.INDIVIDUAL);
+    var q = new Func("q", Type.BOOLEAN, Type.INDIVIDUAL);
+    var r = new Func("r", Type.BOOLEAN, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var x = new Var(Type.INDIVIDUAL);
+    var y = new Var(Type.INDIVIDUAL);
+
+    for (var selection : LiteralSelection.values()) {
+      var strategy = new Strategy();
+      strategy.selection = selection;
+
+      // p(a), p(b), p(x) => q(f(x)), q(x) & p(y) => r(x, y), !r(f(a), b)
+      var clauses = new ArrayList<Clause>();
+      clauses.add(clause(List.of(), List.of(p.call(a))));
+      clauses.add(clause(List.of(), List.of(p.call(b))));
+      clauses.add(clause(List.of(p.call(x)), List.of(q.call(f.call(x)))));
+      clauses.add(clause(List.of(q.call(x), p.call(y)), List.of(r.call(x, y))));
+      clauses.add(clause(List.of(r.call(f.call(a), b)), List.of()));
+      assertFalse(selection.toString(), Superposition.sat(clauses, strategy, 10000));
+
+      // Without the last clause, the search saturates
+      clauses.remove(clauses.size() - 1);
+      assertTrue(selection.toString(), Superposition.sat(clauses, strategy, 10000));
+    }
+  }
+}
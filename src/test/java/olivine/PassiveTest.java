@@ -0,0 +1,130 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class PassiveTest {
+  private static final GlobalVar A = new GlobalVar("a", Type.INDIVIDUAL);
+  private static final Func F = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL);
+
+  private static int count;
+
+  // A unit clause whose weight grows with n, with a constant of its own so it can be recognized
+  // after being decoded
+  private static Clause clause(int n, boolean goal) {
+    Term a = A;
+    for (var i = 0; i < n; i++) a = F.call(a);
+    var b = new GlobalVar("b" + count++, Type.INDIVIDUAL);
+    var c = new Clause(new ArrayList<>(), new ArrayList<>(List.of(Term.of(Tag.EQUALS, a, b))));
+    c.goal = goal;
+    return c;
+  }
+
+  private static void assertClause(Clause expected, Clause actual) {
+    assertEquals(expected.toString(), actual.toString());
+    assertEquals(expected.goal, actual.goal);
+  }
+
+  @Test
+  public void weight() {
+    var passive = new Passive(0, 1, 0);
+    var c3 = clause(3, false);
+    var c1 = clause(1, false);
+    var c2 = clause(2, false);
+    var d1 = clause(1, false);
+    passive.add(c3);
+    passive.add(c1);
+    passive.add(c2);
+    passive.add(d1);
+    assertEquals(4, passive.size());
+
+    // Equal weights come out oldest first
+    assertClause(c1, passive.poll());
+    assertClause(d1, passive.poll());
+    assertClause(c2, passive.poll());
+    assertClause(c3, passive.poll());
+    assertTrue(passive.isEmpty());
+    assertNull(passive.poll());
+  }
+
+  @Test
+  public void ratio() {
+    var passive = new Passive(1, 2, 0);
+    var heavy = clause(10, false);
+    passive.add(heavy);
+    var light = new ArrayList<Clause>();
+    for (var i = 0; i < 5; i++) {
+      var c = clause(1, false);
+      light.add(c);
+      passive.add(c);
+    }
+
+    // First pick is by age, then two by weight
+    assertClause(heavy, passive.poll());
+    assertClause(light.get(0), passive.poll());
+    assertClause(light.get(1), passive.poll());
+
+    // The heavy clause, already selected, is skipped in the age queue
+    assertClause(light.get(2), passive.poll());
+    assertEquals(2, passive.size());
+  }
+
+  @Test
+  public void goal() {
+    var passive = new Passive(0, 1, 1);
+    var c = clause(1, false);
+    var g = clause(5, true);
+    passive.add(c);
+    passive.add(g);
+    assertClause(c, passive.poll());
+    assertClause(g, passive.poll());
+
+    // With no goal clauses left, the weight queue stands in
+    passive.add(clause(2, false));
+    passive.add(clause(3, false));
+    passive.poll();
+    assertEquals(1, passive.size());
+    assertNotNull(passive.poll());
+    assertTrue(passive.isEmpty());
+  }
+
+  @Test
+  public void spill() {
+    var passive = new Passive(0, 1, 0, 4);
+    for (var i = 10; i > 0; i--) passive.add(clause(i, i % 3 == 0));
+    assertEquals(10, passive.size());
+
+    // Nothing is lost, and the lightest clauses still come first
+    var weights = new ArrayList<Integer>();
+    while (!passive.isEmpty()) {
+      var c = passive.poll();
+      assertEquals((c.weight - 5) % 3 == 0, c.goal);
+      weights.add(c.weight);
+    }
+    assertEquals(List.of(6, 7, 8, 9, 10, 11, 12, 13, 14, 15), weights);
+    assertNull(passive.poll());
+    passive.close();
+  }
+
+  @Test
+  public void spillFair() {
+    var passive = new Passive(1, 1, 0, 4);
+    var heavy = clause(20, false);
+    passive.add(heavy);
+    for (var i = 0; i < 4; i++) passive.add(clause(1, false));
+
+    // New light clauses keep the memory full, but the heavy one, spilled to disk, is the oldest,
+    // so the age queue still gets to it
+    var found = false;
+    for (var i = 0; i < 10 && !found; i++) {
+      found = passive.poll().toString().equals(heavy.toString());
+      passive.add(clause(1, false));
+      passive.add(clause(1, false));
+    }
+    assertTrue(found);
+    passive.close();
+  }
+}
@@ -0,0 +1,96 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class PortfolioTest {
+  private static Clause clause(List<Term> negative, List<Term> positive) {
+    return new Clause(new ArrayList<>(negative), new ArrayList<>(positive));
+  }
+
+  // f(a) = b, f(x) = c, p(b), !p(c)
+  private static List<Clause> problem() {
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var b = new GlobalVar("b", Type.INDIVIDUAL);
+    var c = new GlobalVar("c", Type.INDIVIDUAL);
+    var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var p = new Func("p", Type.BOOLEAN, Type.INDIVIDUAL);
+    var x = new Var(Type.INDIVIDUAL);
+    var clauses = new ArrayList<Clause>();
+    clauses.add(clause(List.of(), List.of(Term.of(Tag.EQUALS, f.call(a), b))));
+    clauses.add(clause(List.of(), List.of(Term.of(Tag.EQUALS, f.call(x), c))));
+    clauses.add(clause(List.of(), List.of(p.call(b))));
+    clauses.add(clause(List.of(p.call(c)), List.of()));
+    return clauses;
+  }
+
+  // Group theory, which never saturates
+  private static List<Clause> group() {
+    var e = new GlobalVar("e", Type.INDIVIDUAL);
+    var mul = new Func("mul", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var inv = new Func("inv", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var x = new Var(Type.INDIVIDUAL);
+    var y = new Var(Type.INDIVIDUAL);
+    var z = new Var(Type.INDIVIDUAL);
+    var clauses = new ArrayList<Clause>();
+    clauses.add(
+        clause(
+            List.of(),
+            List.of(
+                Term.of(Tag.EQUALS, mul.call(mul.call(x, y), z), mul.call(x, mul.call(y, z))))));
+    clauses.add(clause(List.of(), List.of(Term.of(Tag.EQUALS, mul.call(e, x), x))));
+    clauses.add(clause(List.of(), List.of(Term.of(Tag.EQUALS, mul.call(inv.call(x), x), e))));
+    return clauses;
+  }
+
+  @Test
+  public void giveUp() {
+    var portfolio = new Portfolio();
+    portfolio.add("quick", new Strategy(), 1);
+    portfolio.add("full", new Strategy());
+
+    // One strategy giving up does not end the run
+    var clauses = problem();
+    for (var c : clauses) c.birth = -1;
+    assertFalse(portfolio.sat(clauses, 1000));
+    assertEquals("full", portfolio.winner);
+
+    // Each strategy worked on copies of the clauses
+    for (var c : clauses) assertEquals(-1, c.birth);
+  }
+
+  @Test(expected = Fail.class)
+  public void allGiveUp() {
+    var portfolio = new Portfolio();
+    portfolio.add("a", new Strategy(), 1);
+    portfolio.add("b", new Strategy(), 2);
+    portfolio.sat(problem(), 1000);
+  }
+
+  @Test
+  public void cancel() {
+    // The portfolio stops the strategies that lose by interrupting them, and a search that would
+    // otherwise run forever stops when interrupted
+    Thread.currentThread().interrupt();
+    try {
+      Superposition.sat(group(), Long.MAX_VALUE);
+      fail();
+    } catch (Fail e) {
+      assertTrue(Thread.interrupted());
+    }
+  }
+
+  @Test
+  public void presets() {
+    for (var name : List.of("small", "wide")) {
+      var portfolio = Portfolio.of(name, new Strategy());
+      assertTrue(portfolio.size() > 1);
+      assertFalse(name, portfolio.sat(problem(), 1000));
+      assertNotNull(portfolio.winner);
+    }
+    assertThrows(IllegalArgumentException.class, () -> Portfolio.of("none", new Strategy()));
+  }
+}
@@ -0,0 +1,126 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class SatPreprocessorTest {
+  private static DimacsParser.Problem problem(List<int[]> clauses) throws IOException {
+    var sb = new StringBuilder();
+    for (var c : clauses) {
+      for (var x : c) sb.append(x).append(' ');
+      sb.append("0\n");
+    }
+    return DimacsParser.read("test.cnf", Etc.stringInputStream(sb.toString()));
+  }
+
+  private static boolean satisfies(SatPreprocessor preprocessor, List<int[]> clauses) {
+    loop:
+    for (var c : clauses) {
+      for (var x : c) if (preprocessor.value(Math.abs(x)) == x > 0) continue loop;
+      return false;
+    }
+    return true;
+  }
+
+  private static Boolean solve(List<int[]> clauses, Strategy strategy) throws IOException {
+    var preprocessor = new SatPreprocessor(problem(clauses), strategy);
+    var result = preprocessor.solve(Long.MAX_VALUE);
+    if (result) assertTrue(satisfies(preprocessor, clauses));
+    return result;
+  }
+
+  private static List<int[]> random(Random random, int vars, int clauses) {
+    var v = new ArrayList<int[]>();
+    for (var i = 0; i < clauses; i++) {
+      // Mostly three literals, with some shorter and longer clauses, so every stage has work
+      var c = new int[1 + random.nextInt(5) / 2 + random.nextInt(2)];
+      if (random.nextInt(vars) > 1 && c.length == 1) c = new int[3];
+      for (var j = 0; j < c.length; j++) {
+        c[j] = 1 + random.nextInt(vars);
+        if (random.nextBoolean()) c[j] = -c[j];
+      }
+      v.add(c);
+    }
+    return v;
+  }
+
+  @Test
+  public void random() throws IOException {
+    var random = new Random(0);
+    var strategies = new ArrayList<Strategy>();
+    strategies.add(new Strategy());
+    for (var effort : new String[] {"0:0:0", "1:0:0", "0:1:0", "0:0:1", "100:100:100"}) {
+      var strategy = new Strategy();
+      strategy.set("sat-effort", effort);
+      strategies.add(strategy);
+    }
+    var sat = 0;
+    for (var trial = 0; trial < 300; trial++) {
+      var vars = 5 + random.nextInt(40);
+      var clauses = random(random, vars, vars * (30 + random.nextInt(20)) / 10);
+      var expected = Cdcl.sat(problem(clauses), Long.MAX_VALUE);
+      for (var strategy : strategies) assertEquals(expected, solve(clauses, strategy));
+      if (expected) sat++;
+    }
+    assertTrue(0 < sat && sat < 300);
+  }
+
+  @Test
+  public void stages() throws IOException {
+    // 1 is a unit, 2 pure, and 3 a variable that can be eliminated
+    var clauses =
+        List.of(
+            new int[] {1},
+            new int[] {-1, 4, 5},
+            new int[] {2, 4},
+            new int[] {2, -5},
+            new int[] {3, 4, 6},
+            new int[] {-3, 5, 6},
+            new int[] {4, 5, 6},
+            new int[] {-4, -5},
+            new int[] {-4, -6});
+    Stats.reset();
+    assertTrue(solve(clauses, new Strategy()));
+    var stats = Stats.get();
+    assertTrue(stats.get("sat pure literals") > 0);
+    assertTrue(stats.get("sat subsumed clauses") > 0);
+    assertTrue(stats.get("sat eliminated variables") > 0);
+
+    // Probing 1 gives a conflict, so -1 is a unit
+    clauses =
+        List.of(
+            new int[] {-1, 2},
+            new int[] {-1, 3},
+            new int[] {-2, -3, 4},
+            new int[] {-2, -3, -4},
+            new int[] {1, 5, 6},
+            new int[] {1, -5, 6},
+            new int[] {-6, 5, 2});
+    var strategy = new Strategy();
+    strategy.set("sat-effort", "0:0:1000");
+    Stats.reset();
+    assertTrue(solve(clauses, strategy));
+    assertTrue(Stats.get().get("sat failed literals") > 0);
+
+    assertFalse(solve(List.of(new int[] {1, 2}, new int[] {-1}, new int[] {-2}), strategy));
+    assertFalse(solve(List.of(new int[] {}), new Strategy()));
+  }
+
+  @Test
+  public void interrupt() throws IOException {
+    // Preprocessing stops when the thread is interrupted, as the solver does
+    var problem = problem(random(new Random(1), 50, 100));
+    Thread.currentThread().interrupt();
+    try {
+      SatPreprocessor.sat(problem, new Strategy(), Long.MAX_VALUE);
+      fail();
+    } catch (Fail e) {
+      assertTrue(Thread.interrupted());
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class StrategyTest {
+  @Test
+  public void pickRatio() {
+    var strategy = new Strategy();
+    strategy.set("pick-ratio", "2:3:1");
+    assertEquals(2, strategy.ageRatio);
+    assertEquals(3, strategy.weightRatio);
+    assertEquals(1, strategy.goalRatio);
+
+    // A bad ratio changes nothing
+    assertThrows(IllegalArgumentException.class, () -> strategy.set("pick-ratio", "1:-1"));
+    assertThrows(IllegalArgumentException.class, () -> strategy.set("pick-ratio", "1"));
+    assertEquals(2, strategy.ageRatio);
+    assertEquals(3, strategy.weightRatio);
+    assertEquals(1, strategy.goalRatio);
+
+    strategy.set("pick-ratio", "0:1");
+    assertEquals(0, strategy.goalRatio);
+  }
+}
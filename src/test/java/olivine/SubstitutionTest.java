@@ -0,0 +1,93 @@
+package olivine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class SubstitutionTest {
+  private final List<Func> funcs = new ArrayList<>();
+  private final List<GlobalVar> globalVars = new ArrayList<>();
+  private final List<Var> vars = new ArrayList<>();
+  private final List<Var> vars1 = new ArrayList<>();
+  private final Random random = new Random(0);
+
+  private Term randomIndividualTerm(List<Var> vars, int depth) {
+    if (depth == 0 || random.nextInt(100) < 40)
+      if (random.nextInt(100) < 30) return globalVars.get(random.nextInt(globalVars.size()));
+      else return vars.get(random.nextInt(vars.size()));
+
+    var f = funcs.get(random.nextInt(funcs.size()));
+    var args = new Term[f.params.length];
+    for (var i = 0; i < args.length; i++) args[i] = randomIndividualTerm(vars, depth - 1);
+    return f.call(args);
+  }
+
+  private void makeSymbols() {
+    funcs.add(new Func("f1", Type.INDIVIDUAL, Type.INDIVIDUAL));
+    funcs.add(new Func("f2", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL));
+    for (var i = 0; i < 2; i++)
+      globalVars.add(new GlobalVar(String.format("a%d", i), Type.INDIVIDUAL));
+    for (var i = 0; i < 3; i++) vars.add(new Var(Type.INDIVIDUAL));
+    for (var i = 0; i < 3; i++) vars1.add(new Var(Type.INDIVIDUAL));
+  }
+
+  @Test
+  public void undo() {
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var b = new GlobalVar("b", Type.INDIVIDUAL);
+    var x = new Var[100];
+    for (var i = 0; i < x.length; i++) x[i] = new Var(Type.INDIVIDUAL);
+
+    var map = new Substitution();
+    assertTrue(map.isEmpty());
+    for (var i = 0; i < 10; i++) map.bind(x[i], a);
+    var mark = map.mark();
+
+    // Enough to grow the table several times
+    for (var i = 10; i < x.length; i++) map.bind(x[i], b);
+    for (var i = 0; i < x.length; i++) assertSame(i < 10 ? a : b, map.get(x[i]));
+
+    map.undo(mark);
+    for (var i = 0; i < x.length; i++) assertSame(i < 10 ? a : null, map.get(x[i]));
+
+    map.clear();
+    assertTrue(map.isEmpty());
+    for (var y : x) assertNull(map.get(y));
+  }
+
+  @Test
+  public void sameAsFMap() {
+    makeSymbols();
+    var map = new Substitution();
+    var unified = 0;
+    var matched = 0;
+    for (var i = 0; i < 1000; i++) {
+      var a = randomIndividualTerm(vars, 3);
+      var b = randomIndividualTerm(vars, 3);
+
+      var m = a.unify(FMap.EMPTY, b);
+      map.clear();
+      assertEquals(m != null, a.unify(map, b));
+      if (m != null) {
+        assertEquals(a.replace(m), a.replace(map));
+        assertEquals(a.replace(map), b.replace(map));
+        unified++;
+      }
+
+      // Matching assumes the terms have disjoint variables
+      b = randomIndividualTerm(vars1, 3);
+      m = a.match(FMap.EMPTY, b);
+      map.clear();
+      assertEquals(m != null, a.match(map, b));
+      if (m != null) {
+        assertEquals(a.replace(m), a.replace(map));
+        matched++;
+      }
+    }
+    assertTrue(unified > 0);
+    assertTrue(matched > 0);
+  }
+}
@@ -4,6 +4,8 @@ import static org.junit.Assert.*;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
 import org.junit.Test;
 
 public class SubsumptionTest {
@@ -388,4 +390,60 @@ public class SubsumptionTest {
     assertFalse(subsumption.subsumes(c, d));
     assertFalse(subsumption.subsumes(d, c));
   }
+
+  private Clause randomClause(Random random, Term a, Func p1, Func q2, Func f1) {
+    var x = new Var(Type.INDIVIDUAL);
+    var y = new Var(Type.INDIVIDUAL);
+    var args = new Term[] {a, x, y, f1.call(a), f1.call(x)};
+    var negative = new ArrayList<Term>();
+    var positive = new ArrayList<Term>();
+    var n = 1 + random.nextInt(3);
+    for (var i = 0; i < n; i++) {
+      var b =
+          random.nextBoolean()
+              ? p1.call(args[random.nextInt(args.length)])
+              : q2.call(args[random.nextInt(args.length)], args[random.nextInt(args.length)]);
+      (random.nextBoolean() ? negative : positive).add(b);
+    }
+    return new Clause(negative, positive);
+  }
+
+  @Test
+  public void index() {
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var p1 = new Func("p1", Type.BOOLEAN, Type.INDIVIDUAL);
+    var q2 = new Func("q2", Type.BOOLEAN, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var f1 = new Func("f1", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var random = new Random(0);
+    var subsumption = new Subsumption();
+    var clauses = new ArrayList<Clause>();
+    for (var i = 0; i < 200; i++) {
+      var c = randomClause(random, a, p1, q2, f1);
+      if (c.isTrue()) continue;
+      clauses.add(c);
+      subsumption.add(c);
+    }
+
+    // Forward subsumption finds a subsuming clause if there is one
+    var subsumed = 0;
+    for (var i = 0; i < 200; i++) {
+      var c = randomClause(random, a, p1, q2, f1);
+      var expected = false;
+      for (var d : clauses) if (subsumption.subsumes(d, c)) expected = true;
+      assertEquals(expected, subsumption.subsumesForward(c));
+      if (expected) subsumed++;
+    }
+    assertTrue(subsumed > 0);
+
+    // Backward subsumption finds and removes all subsumed clauses
+    for (var i = 0; i < 20; i++) {
+      var c = randomClause(random, a, p1, q2, f1);
+      var expected = new HashSet<Clause>();
+      for (var d : clauses) if (subsumption.subsumes(c, d)) expected.add(d);
+      var removed = subsumption.subsumeBackward(c);
+      assertEquals(expected, new HashSet<>(removed));
+      clauses.removeAll(removed);
+      for (var d : removed) assertFalse(subsumption.subsumeBackward(d).contains(d));
+    }
+  }
 }
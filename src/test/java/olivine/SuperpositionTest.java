@@ -3,6 +3,8 @@ package olivine;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.junit.Test;
 
 public class SuperpositionTest {
@@ -287,6 +289,173 @@ public class SuperpositionTest {
     assertFalse(sat);
   }
 
+  @Test
+  public void threads() {
+    var e = new GlobalVar("e", Type.INDIVIDUAL);
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var b = new GlobalVar("b", Type.INDIVIDUAL);
+    var mul = new Func("mul", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var inv = new Func("inv", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var x = new Var(Type.INDIVIDUAL);
+    var y = new Var(Type.INDIVIDUAL);
+    var z = new Var(Type.INDIVIDUAL);
+    var clauses = new ArrayList<Clause>();
+
+    // Group axioms
+    clauses.add(
+        new Clause(
+            new ArrayList<>(),
+            new ArrayList<>(
+                List.of(
+                    Term.of(
+                        Tag.EQUALS, mul.call(mul.call(x, y), z), mul.call(x, mul.call(y, z)))))));
+    clauses.add(
+        new Clause(
+            new ArrayList<>(), new ArrayList<>(List.of(Term.of(Tag.EQUALS, mul.call(e, x), x)))));
+    clauses.add(
+        new Clause(
+            new ArrayList<>(),
+            new ArrayList<>(List.of(Term.of(Tag.EQUALS, mul.call(inv.call(x), x), e)))));
+
+    // Left cancellation
+    var c = new GlobalVar("c", Type.INDIVIDUAL);
+    clauses.add(
+        new Clause(
+            new ArrayList<>(),
+            new ArrayList<>(List.of(Term.of(Tag.EQUALS, mul.call(a, b), mul.call(a, c))))));
+    clauses.add(new Clause(new ArrayList<>(List.of(Term.of(Tag.EQUALS, b, c))), new ArrayList<>()));
+
+    var strategy = new Strategy();
+    strategy.threads = 4;
+    assertFalse(Superposition.sat(clauses, strategy, 10000));
+
+    // Without the conjecture, runs long enough for the active set to grow, and inferences to be
+    // split across threads. The search is the same as with one thread, clause for clause
+    clauses.remove(clauses.size() - 1);
+    var stats = new ArrayList<Map<String, Long>>();
+    for (var threads : new int[] {1, 4}) {
+      strategy.threads = threads;
+      Stats.reset();
+      try {
+        Superposition.sat(clauses, strategy, 3000);
+        fail();
+      } catch (Fail ignored) {
+      }
+      stats.add(Stats.get());
+    }
+    assertTrue(stats.get(0).get("passive clauses") > 3000);
+    assertEquals(stats.get(0), stats.get(1));
+  }
+
+  @Test
+  public void demodulation() {
+    var e = new GlobalVar("e", Type.INDIVIDUAL);
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var b = new GlobalVar("b", Type.INDIVIDUAL);
+    var mul = new Func("mul", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var inv = new Func("inv", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var x = new Var(Type.INDIVIDUAL);
+    var y = new Var(Type.INDIVIDUAL);
+    var z = new Var(Type.INDIVIDUAL);
+    var clauses = new ArrayList<Clause>();
+
+    // A group where every element is its own inverse is commutative. Without rewriting by the unit
+    // equations derived along the way, this takes far longer than the step limit
+    clauses.add(
+        new Clause(
+            new ArrayList<>(),
+            new ArrayList<>(
+                List.of(
+                    Term.of(
+                        Tag.EQUALS, mul.call(mul.call(x, y), z), mul.call(x, mul.call(y, z)))))));
+    clauses.add(
+        new Clause(
+            new ArrayList<>(), new ArrayList<>(List.of(Term.of(Tag.EQUALS, mul.call(e, x), x)))));
+    clauses.add(
+        new Clause(
+            new ArrayList<>(),
+            new ArrayList<>(List.of(Term.of(Tag.EQUALS, mul.call(inv.call(x), x), e)))));
+    clauses.add(
+        new Clause(
+            new ArrayList<>(), new ArrayList<>(List.of(Term.of(Tag.EQUALS, mul.call(x, x), e)))));
+    clauses.add(
+        new Clause(
+            new ArrayList<>(List.of(Term.of(Tag.EQUALS, mul.call(a, b), mul.call(b, a)))),
+            new ArrayList<>()));
+    assertFalse(Superposition.sat(clauses, 1000));
+  }
+
+  @Test
+  public void lazy() {
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var b = new GlobalVar("b", Type.INDIVIDUAL);
+    var c = new GlobalVar("c", Type.INDIVIDUAL);
+    var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var p = new Func("p", Type.BOOLEAN, Type.INDIVIDUAL);
+    var x = new Var(Type.INDIVIDUAL);
+    var clauses = new ArrayList<Clause>();
+
+    // f(a) = b, f(x) = c, p(b), !p(c)
+    clauses.add(
+        new Clause(new ArrayList<>(), new ArrayList<>(List.of(Term.of(Tag.EQUALS, f.call(a), b)))));
+    clauses.add(
+        new Clause(new ArrayList<>(), new ArrayList<>(List.of(Term.of(Tag.EQUALS, f.call(x), c)))));
+    clauses.add(new Clause(new ArrayList<>(), new ArrayList<>(List.of(p.call(b)))));
+    clauses.add(new Clause(new ArrayList<>(List.of(p.call(c))), new ArrayList<>()));
+
+    var strategy = new Strategy();
+    strategy.lazy = true;
+    assertFalse(Superposition.sat(clauses, strategy, 1000));
+
+    // Without the last clause, the recipes run out and the clauses are satisfiable
+    clauses.remove(clauses.size() - 1);
+    assertTrue(Superposition.sat(clauses, strategy, 1000));
+  }
+
+  @Test
+  public void avatar() {
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var b = new GlobalVar("b", Type.INDIVIDUAL);
+    var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var p = new Func("p", Type.BOOLEAN, Type.INDIVIDUAL);
+    var q = new Func("q", Type.BOOLEAN, Type.INDIVIDUAL);
+    var r = new Func("r", Type.BOOLEAN, Type.INDIVIDUAL);
+    var x = new Var(Type.INDIVIDUAL);
+    var y = new Var(Type.INDIVIDUAL);
+    var clauses = new ArrayList<Clause>();
+
+    // p(x) | q(y) | r(a) splits three ways
+    var c =
+        new Clause(new ArrayList<>(), new ArrayList<>(List.of(p.call(x), q.call(y), r.call(a))));
+    assertEquals(3, c.components().size());
+    assertEquals(
+        1,
+        new Clause(new ArrayList<>(), new ArrayList<>(List.of(p.call(x), q.call(f.call(x)))))
+            .components()
+            .size());
+    clauses.add(c);
+
+    // !p(a), !q(f(y)) | r(y), !r(b), !r(a)
+    clauses.add(new Clause(new ArrayList<>(List.of(p.call(a))), new ArrayList<>()));
+    clauses.add(
+        new Clause(
+            new ArrayList<>(List.of(q.call(f.call(y)))), new ArrayList<>(List.of(r.call(y)))));
+    clauses.add(new Clause(new ArrayList<>(List.of(r.call(b))), new ArrayList<>()));
+    clauses.add(new Clause(new ArrayList<>(List.of(r.call(a))), new ArrayList<>()));
+
+    var strategy = new Strategy();
+    strategy.avatar = true;
+    Stats.reset();
+    assertFalse(Superposition.sat(clauses, strategy, 1000));
+    assertTrue(Stats.get().get("split clauses") > 0);
+    assertFalse(Superposition.sat(clauses, 1000));
+
+    // Without the last clause, the model that chooses r(a) satisfies the rest
+    clauses.remove(clauses.size() - 1);
+    assertTrue(Superposition.sat(clauses, strategy, 1000));
+    assertTrue(Superposition.sat(clauses, 1000));
+  }
+
   @Test(expected = Fail.class)
   public void complicated() {
     var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL);
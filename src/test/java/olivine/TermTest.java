@@ -258,6 +258,29 @@ public class TermTest {
     return Term.of(Type.REAL, BigRational.of(num, den));
   }
 
+  @Test
+  public void intern() {
+    var x = new Var(Type.INDIVIDUAL);
+    var a = new GlobalVar("a", Type.INDIVIDUAL);
+    var f = new Func("f", Type.INDIVIDUAL, Type.INDIVIDUAL, Type.INDIVIDUAL);
+    var g = new Func("g", Type.INDIVIDUAL, Type.INDIVIDUAL);
+
+    assertSame(f.call(g.call(a), x), f.call(g.call(a), x));
+    assertNotSame(f.call(g.call(a), x), f.call(x, g.call(a)));
+    assertSame(Term.of(10), Term.of(BigInteger.TEN));
+    assertNotEquals(
+        Term.of(Type.RATIONAL, BigRational.of(BigInteger.ONE)),
+        Term.of(Type.REAL, BigRational.of(BigInteger.ONE)));
+
+    var b = f.call(g.call(a), x);
+    assertEquals(4, b.symbolCount());
+    assertEquals(2, b.depth());
+    assertFalse(b.isGround());
+    assertTrue(g.call(a).isGround());
+    assertSame(b, b.replace(FMap.EMPTY));
+    assertSame(f.call(g.call(a), a), b.replace(FMap.EMPTY.add(x, a)));
+  }
+
   private static void assertSimplify(Term a, Term b) {
     assertEquals(a.simplify(), b);
   }
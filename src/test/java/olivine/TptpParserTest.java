@@ -64,4 +64,36 @@ public class TptpParserTest {
     TptpParser.parse(null, Etc.stringInputStream(s), cnf);
     assertEquals(cnf.clauses.size(), 0);
   }
+
+  @Test
+  public void quotes() throws IOException {
+    var cnf = new CNF();
+    TptpParser.parse(
+        null, Etc.stringInputStream("fof(a, axiom, p('a\\'b', 'c', \"d\\\\e\", c)).\n"), cnf);
+    var a = cnf.clauses.get(0).literals[0];
+    assertEquals("a'b", a.get(1).toString());
+
+    // Quoted and unquoted spellings of a word are the same symbol
+    assertSame(a.get(2), a.get(4));
+    assertEquals("d\\e", a.get(3).toString());
+  }
+
+  @Test
+  public void lineNumbers() throws IOException {
+    var s = "% comment\nfof(a, axiom, p).\n\nfof(b, axiom,\n  q(X)).\n";
+    try {
+      TptpParser.parse("x.p", Etc.stringInputStream(s), new CNF());
+      fail();
+    } catch (ParseError e) {
+      assertEquals("x.p:5: 'X': unknown variable", e.getMessage());
+    }
+
+    s = "fof(a, axiom, p(\"b\n)).\n";
+    try {
+      TptpParser.parse("x.p", Etc.stringInputStream(s), new CNF());
+      fail();
+    } catch (ParseError e) {
+      assertEquals("x.p:1: unclosed quote", e.getMessage());
+    }
+  }
 }
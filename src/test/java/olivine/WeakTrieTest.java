@@ -2,6 +2,9 @@ package olivine;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 import org.junit.Test;
 
 public class WeakTrieTest {
@@ -18,6 +21,24 @@ public class WeakTrieTest {
     assertEquals(s, "zero-zero-zero");
   }
 
+  @Test
+  public void remove() {
+    var trie = new WeakTrie<String>();
+    add(trie, "one-one", 1, 1);
+    add(trie, "one-two", 1, 2);
+    add(trie, "two-two", 2, 2);
+    trie.remove(new int[] {1, 1}, "one-one");
+    assertNull(trie.findLessEqual(new int[] {1, 1}, t -> true));
+    assertEquals(trie.findLessEqual(new int[] {1, 2}, t -> true), "one-two");
+
+    var v = new ArrayList<String>();
+    trie.forGreaterEqual(new int[] {1, 1}, v::add);
+    assertEquals(Set.of("one-two", "two-two"), new HashSet<>(v));
+
+    // Removing something that was never added is not an error
+    trie.remove(new int[] {5, 5}, "five-five");
+  }
+
   private void add(WeakTrie<String> trie, String value, int... key) {
     trie.add(key, value);
   }